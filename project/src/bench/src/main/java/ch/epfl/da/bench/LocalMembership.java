@@ -0,0 +1,44 @@
+package ch.epfl.da.bench;
+
+import ch.epfl.da.Process;
+
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+
+/**
+ * Builds the membership of processes running on the loopback interface,
+ * on ports that are free when the benchmark starts.
+ */
+public final class LocalMembership {
+
+    private LocalMembership() {
+    }
+
+    /**
+     * @param n the number of processes
+     * @return the processes, process i + 1 at index i, each knowing all the others
+     * @throws SocketException if no free port could be found
+     */
+    public static Process[] processes(int n) throws SocketException {
+        InetSocketAddress[] peers = new InetSocketAddress[n];
+        for (int i = 0; i < n; ++i) {
+            try (DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+                peers[i] = new InetSocketAddress(InetAddress.getLoopbackAddress(), socket.getLocalPort());
+            }
+        }
+
+        Process[] processes = new Process[n];
+        int[] affectedBy = new int[n];
+        for (int i = 0; i < n; ++i) {
+            affectedBy[i] = i + 1;
+        }
+        for (int i = 0; i < n; ++i) {
+            processes[i] = new Process(i + 1, peers[i]);
+            processes[i].setPeersAndOthers(peers);
+            processes[i].setAffectedBy(affectedBy);
+        }
+        return processes;
+    }
+}
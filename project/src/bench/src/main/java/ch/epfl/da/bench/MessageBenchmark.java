@@ -0,0 +1,67 @@
+package ch.epfl.da.bench;
+
+import ch.epfl.da.message.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing and comparison of messages, which key the maps of the uniform reliable broadcast.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageBenchmark {
+
+    /**
+     * Size of the payload: 4 bytes for FIFO, 4 bytes per process for LCB
+     */
+    @Param({"4", "20", "400"})
+    public int size;
+
+    private Message message;
+    private Message relayed;
+    private Message other;
+
+    @Setup
+    public void setup() {
+        byte[] data = new byte[size];
+        data[size - 1] = 1;
+        message = new Message(1, 7, 1, data);
+        relayed = message.resend(2);
+        other = new Message(1, 8, 1, data.clone());
+    }
+
+    @Benchmark
+    public int hashCodeOf() {
+        return relayed.hashCode();
+    }
+
+    @Benchmark
+    public boolean equalsRelayed() {
+        return message.equals(relayed);
+    }
+
+    @Benchmark
+    public boolean equalsOther() {
+        return message.equals(other);
+    }
+
+    @Benchmark
+    public Message resend() {
+        return message.resend(2);
+    }
+}
@@ -0,0 +1,76 @@
+package ch.epfl.da.bench;
+
+import ch.epfl.da.message.Message;
+import ch.epfl.da.perfectLink.MessageType;
+import ch.epfl.da.perfectLink.PerfectLinkMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of the frames of the perfect link, through arrays
+ * (one allocation per frame) and through reused buffers.
+ * Run with -prof gc to see the allocation per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PerfectLinkMessageBenchmark {
+
+    private PerfectLinkMessage plm;
+    private byte[] frame;
+    private ByteBuffer encodeBuffer;
+    private ByteBuffer decodeBuffer;
+    private List<PerfectLinkMessage> decoded;
+
+    @Setup
+    public void setup() {
+        // an LCB message of a 5 processes membership
+        plm = new PerfectLinkMessage(MessageType.MESSAGE, 42, new Message(1, 2, new byte[20]));
+        frame = PerfectLinkMessage.serialize(plm);
+        encodeBuffer = ByteBuffer.allocateDirect(PerfectLinkMessage.frameLength(plm));
+        decodeBuffer = ByteBuffer.allocateDirect(frame.length);
+        decodeBuffer.put(frame).flip();
+        decoded = new ArrayList<>();
+    }
+
+    @Benchmark
+    public byte[] encodeToArray() {
+        return PerfectLinkMessage.serialize(plm);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeIntoBuffer() {
+        encodeBuffer.clear();
+        PerfectLinkMessage.serialize(plm, encodeBuffer);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public PerfectLinkMessage decodeFromArray() {
+        return PerfectLinkMessage.deserialize(frame);
+    }
+
+    @Benchmark
+    public List<PerfectLinkMessage> decodeFromBuffer() {
+        decoded.clear();
+        decodeBuffer.rewind();
+        PerfectLinkMessage.deserializeBatch(decodeBuffer, decoded);
+        return decoded;
+    }
+}
@@ -0,0 +1,66 @@
+package ch.epfl.da.broadcast;
+
+import ch.epfl.da.bench.LocalMembership;
+import ch.epfl.da.message.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.net.SocketException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FIFO delivery of the messages of one origin when the uniform reliable broadcast
+ * delivers them out of order: each group of reorder consecutive messages arrives
+ * in reverse order, so all but the last wait in the {@link ReorderBuffer} of the
+ * origin: in its ring when they are less than da.fifo.window (default 1024) ahead of
+ * the next message to deliver, as with every reorder measured here, in its overflow
+ * map beyond. Scores and allocations are per message.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FIFOBroadcastBenchmark {
+
+    private static final int BATCH = 1024;
+    private static final int ORIGIN = 2;
+
+    @Param({"1", "16", "256"})
+    public int reorder;
+
+    private FIFOBroadcast fifo;
+    private long delivered;
+    private int next;
+
+    @Setup
+    public void setup() throws SocketException {
+        fifo = new FIFOBroadcast(LocalMembership.processes(3)[0], m -> ++delivered);
+        next = 1;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long urbDeliver() {
+        for (int group = 0; group < BATCH; group += reorder) {
+            for (int i = reorder - 1; i >= 0; --i) {
+                byte[] data = BigInteger.valueOf(next + group + i).toByteArray();
+                fifo.urbDeliver(new Message(ORIGIN, next + group + i - 1, ORIGIN, data));
+            }
+        }
+        next += BATCH;
+        return delivered;
+    }
+}
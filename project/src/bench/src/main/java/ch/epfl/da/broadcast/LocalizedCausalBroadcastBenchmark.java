@@ -0,0 +1,70 @@
+package ch.epfl.da.broadcast;
+
+import ch.epfl.da.bench.LocalMembership;
+import ch.epfl.da.message.LCBMessage;
+import ch.epfl.da.message.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.SocketException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Causal delivery when the uniform reliable broadcast delivers messages before
+ * the messages they depend on: each group of reorder consecutive messages of one
+ * origin arrives in reverse order, so all but the last wait in the {@link CausalQueue},
+ * indexed by the delivery of their origin they wait for. Each delivery then wakes up
+ * only the message waiting for it, however many are pending. Scores and allocations
+ * are per message.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LocalizedCausalBroadcastBenchmark {
+
+    private static final int BATCH = 1024;
+    private static final int ORIGIN = 2;
+
+    @Param({"1", "16", "256"})
+    public int reorder;
+
+    @Param({"5"})
+    public int processes;
+
+    private LocalizedCausalBroadcast lcb;
+    private long delivered;
+    private int next;
+
+    @Setup
+    public void setup() throws SocketException {
+        lcb = new LocalizedCausalBroadcast(LocalMembership.processes(processes)[0], m -> ++delivered);
+        next = 0;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long urbDeliver() {
+        for (int group = 0; group < BATCH; group += reorder) {
+            for (int i = reorder - 1; i >= 0; --i) {
+                // the vector clock of the origin counts the messages it broadcast before
+                byte[] clock = LCBMessage.encode(new int[]{ORIGIN}, new int[]{next + group + i});
+                lcb.urbDeliver(new Message(ORIGIN, next + group + i, ORIGIN, clock));
+            }
+        }
+        next += BATCH;
+        return delivered;
+    }
+}
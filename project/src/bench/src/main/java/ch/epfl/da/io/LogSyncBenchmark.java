@@ -0,0 +1,67 @@
+package ch.epfl.da.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to log a million deliveries and close the log, i.e. until all of them are
+ * written (and forced to the disk unless the policy is none), for each format and
+ * sync policy. The files are created in java.io.tmpdir, which must be on the disk
+ * to measure (e.g. -jvmArgs -Djava.io.tmpdir=/var/tmp).
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class LogSyncBenchmark {
+
+    private static final int EVENTS = 1_000_000;
+
+    @Param({"text", "binary"})
+    public String format;
+
+    @Param({"none", "batch", "interval", "size"})
+    public String sync;
+
+    private Path file;
+    private Logger logger;
+
+    @Setup(Level.Invocation)
+    public void setup() throws IOException {
+        file = Files.createTempFile("da_proc_", "." + format);
+        Files.delete(file);
+        SyncPolicy policy = new SyncPolicy(SyncPolicy.Kind.valueOf(sync.toUpperCase()), 100, 1 << 20);
+        logger = new Logger("text".equals(format) ? new TextLog(file, policy) : new BinaryLog(file, policy));
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public void logAndClose() throws IOException {
+        for (int seq = 1; seq <= EVENTS; ++seq) {
+            logger.deliver(2, seq);
+        }
+        logger.close();
+    }
+}
@@ -0,0 +1,91 @@
+package ch.epfl.da.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of logging a million deliveries on the calling thread, for each format.
+ * "writer" is the former logger, which formatted a String per event and appended
+ * it to a BufferedWriter. Closing the logger is not measured.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = LoggerBenchmark.EVENTS)
+@Measurement(iterations = 10, batchSize = LoggerBenchmark.EVENTS)
+@Fork(1)
+@State(Scope.Thread)
+public class LoggerBenchmark {
+
+    static final int EVENTS = 1_000_000;
+
+    @Param({"writer", "text", "binary"})
+    public String format;
+
+    private Path file;
+    private Logger logger;
+    private int seq;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        file = Files.createTempFile("da_proc_", "." + format);
+        switch (format) {
+            case "writer":
+                logger = new Logger(new WriterLog(Files.newBufferedWriter(file)));
+                break;
+            case "text":
+                logger = new Logger(new TextLog(file));
+                break;
+            default:
+                logger = new Logger(new BinaryLog(file));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        logger.close();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public void deliver() throws IOException {
+        logger.deliver(2, ++seq);
+    }
+
+    /**
+     * The former logger
+     */
+    private static final class WriterLog implements LogSink {
+        private final BufferedWriter writer;
+
+        WriterLog(BufferedWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void append(long record, long timestamp) throws IOException {
+            writer.append("d " + (record >>> 32) + " " + (int) record + " \n");
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ch.epfl.da.perfectLink;
+
+import ch.epfl.da.Process;
+import ch.epfl.da.bench.LocalMembership;
+import ch.epfl.da.message.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two perfect links exchanging messages over the loopback interface, or in memory:
+ * process 1 sends a batch of messages to process 2 and waits until all of them are
+ * delivered. Scores and allocations (of the whole JVM, both sides included) are per
+ * message. Each transport is measured, e.g. -p transport=channel runs only one.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PerfectLinkBenchmark {
+
+    private static final int BATCH = 1024;
+
+    @Param({"socket", "channel", "memory"})
+    public String transport;
+
+    private PerfectLink sender;
+    private PerfectLink receiver;
+    private InetSocketAddress target;
+    private final AtomicLong delivered = new AtomicLong();
+    private long sent;
+
+    @Setup
+    public void setup() throws IOException {
+        Process[] processes = LocalMembership.processes(2);
+        sender = new PerfectLink(Transport.open(transport, processes[0].getInetSocketAddress()), m -> { },
+                processes[0]);
+        receiver = new PerfectLink(Transport.open(transport, processes[1].getInetSocketAddress()),
+                m -> delivered.incrementAndGet(), processes[1]);
+        sender.start();
+        receiver.start();
+        target = processes[1].getInetSocketAddress();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        sender.close();
+        receiver.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long sendAndDeliver() throws IOException, InterruptedException {
+        for (int i = 0; i < BATCH; ++i) {
+            sender.awaitCapacity(1);
+            sender.send(new Message(1, 1, new byte[4]), target);
+        }
+        sent += BATCH;
+        while (delivered.get() < sent) {
+            Thread.sleep(0, 100_000);
+        }
+        return sent;
+    }
+}
@@ -13,10 +13,18 @@ import ch.epfl.da.broadcast.LocalizedCausalBroadcast;
 import ch.epfl.da.message.FIFOMessage;
 import ch.epfl.da.io.Logger;
 import ch.epfl.da.message.Message;
+import ch.epfl.da.metrics.Metrics;
 
 /**
  * Main class of the program. Initialize and wait for USR2 signal
- * before broadcasting
+ * before broadcasting, then wait for TERM or INT
+ *
+ * If the process ID is "all", every process of the membership file runs in this
+ * JVM (embedded mode), each one logging in its own da_proc_N.out file. They
+ * communicate through the in-memory transport unless da.pl.transport is set.
+ *
+ * The metrics of each process are written next to its log, in da_proc_N.metrics
+ * (see {@link Metrics}).
  *
  */
 public class Main {
@@ -25,6 +33,7 @@ public class Main {
     private static final int ARG_PID = 0;
     private static final int ARG_MEMBERSHIP = 1;
     private static final int ARG_NUM_MSG = 2;
+    private static final String ALL_PROCESSES = "all";
 
 
     public static void main(String[] args) throws IOException {
@@ -36,11 +45,17 @@ public class Main {
             throw new IllegalArgumentException("Not enough arguments to start the process");
         }
 
+        if (ALL_PROCESSES.equals(args[ARG_PID])) {
+            embedded(args[ARG_MEMBERSHIP], parseNumMessages(args[ARG_NUM_MSG]));
+            return;
+        }
+
         // parse process ID
         pID = parseID(args[ARG_PID]);
 
-        // initialize logger
+        // initialize logger and metrics
         Logger logger = new Logger(pID);
+        Metrics.report(pID);
 
         // set signal handlers
         ProcessSigHandler handler = new ProcessSigHandler(logger);
@@ -52,38 +67,121 @@ public class Main {
         //The initial number of msg to send
         
 
-        // initialize the current process and its FIFO broadcast
-        Process process = processes[pID - 1]; 
-        LocalizedCausalBroadcast lcb = new LocalizedCausalBroadcast(process,
-        		msg -> {
-        			int origin = msg.getOrigin();
-        			int value = msg.getValue();
-        			try {
-						logger.deliver(origin, value);
-					} catch (IOException e) {
-						// TODO Auto-generated catch block
-						e.printStackTrace();
-					}
-        			
-        		});
-        
+        // initialize the current process and its broadcast
+        Process process = processes[pID - 1];
+        Broadcaster broadcaster = broadcaster(process, logger);
+
 
         // wait to receive the USR2 starting signal
-        while (handler.waitForStart().get()) ;
+        awaitQuietly(handler::awaitStart);
 
-        
-        // broadcast messages via FIFOBroadcast
+
+        // broadcast messages
+        broadcastAll(logger, broadcaster, numMessages);
+
+        // keep relaying until TERM or INT, even if the runtime only has daemon (virtual) threads
+        awaitQuietly(handler::awaitStop);
+    }
+
+    /**
+     * Run all the processes of the membership file in this JVM, each one
+     * broadcasting from its own thread once USR2 is received.
+     *
+     * @param membership the membership file
+     * @param numMessages the number of messages each process broadcasts
+     */
+    private static void embedded(String membership, int numMessages) throws IOException {
+        if (System.getProperty("da.pl.transport") == null) {
+            System.setProperty("da.pl.transport", "memory");
+        }
+
+        Process[] processes = parseProcesses(1, membership);
+        Logger[] loggers = new Logger[processes.length];
+        for (int i = 0; i < processes.length; ++i) {
+            loggers[i] = new Logger(i + 1);
+            Metrics.report(i + 1);
+        }
+        ProcessSigHandler handler = new ProcessSigHandler(loggers);
+
+        Broadcaster[] broadcasters = new Broadcaster[processes.length];
+        for (int i = 0; i < processes.length; ++i) {
+            broadcasters[i] = broadcaster(processes[i], loggers[i]);
+        }
+
+        awaitQuietly(handler::awaitStart);
+
+        for (int i = 0; i < processes.length; ++i) {
+            Logger logger = loggers[i];
+            Broadcaster broadcaster = broadcasters[i];
+            Threads.newThread(() -> {
+                try {
+                    broadcastAll(logger, broadcaster, numMessages);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }).start();
+        }
+
+        awaitQuietly(handler::awaitStop);
+    }
+
+    private static void broadcastAll(Logger logger, Broadcaster broadcaster, int numMessages) throws IOException {
         for (int i = 1; i <= numMessages; ++i) {
-        	
-        	lcbroadcast(pID, logger, lcb, i);
+        	logger.broadcast(i);
+        	broadcaster.broadcast(i);
         }
+    }
+
+	/**
+	 * @return the broadcast selected by da.broadcast, "fifo" or "lcb" (default)
+	 */
+	private static Broadcaster broadcaster(Process process, Logger logger) throws IOException {
+		return "fifo".equals(System.getProperty("da.broadcast"))
+				? fifoBroadcaster(process, logger)
+				: lcbBroadcaster(process, logger);
+	}
 
+    /**
+     * A blocking wait
+     */
+    private interface Wait {
+        void await() throws InterruptedException;
     }
 
+	private static void awaitQuietly(Wait wait) {
+		try {
+			wait.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+    /**
+     * Broadcasts the i-th message of the process
+     */
+    private interface Broadcaster {
+        void broadcast(int i);
+    }
+
+	private static Broadcaster lcbBroadcaster(Process process, Logger logger) throws IOException {
+		LocalizedCausalBroadcast lcb = new LocalizedCausalBroadcast(process,
+				msg -> deliver(logger, msg.getOrigin(), msg.getValue()));
+		return i -> lcb.broadcast();
+	}
+
+	private static Broadcaster fifoBroadcaster(Process process, Logger logger) throws IOException {
+		FIFOBroadcast fifo = new FIFOBroadcast(process,
+				msg -> deliver(logger, msg.message().getOrigin(), msg.sequenceID()));
+		int pID = process.getPID();
+		return i -> fifo.broadcast(new Message(pID, pID, ByteBuffer.allocate(INT_SIZE).putInt(i).array()));
+	}
 
-	private static void lcbroadcast(int pID, Logger logger, LocalizedCausalBroadcast lcb, int i) throws IOException {
-		logger.broadcast(i);
-		lcb.broadcast();
+	private static void deliver(Logger logger, int origin, int value) {
+		try {
+			logger.deliver(origin, value);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 
 }
@@ -1,7 +1,7 @@
 package ch.epfl.da;
 
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CountDownLatch;
 
 import ch.epfl.da.io.Logger;
 import sun.misc.Signal;
@@ -10,16 +10,17 @@ import sun.misc.SignalHandler;
 /**
  * Class which handles signals (USR2, TERM, INT)
  */
-public class ProcessSigHandler extends Thread {
-	private final Logger logger;
-	private AtomicBoolean waitForStart;
+public class ProcessSigHandler {
+	private final Logger[] loggers;
+	private final CountDownLatch start;
+	private final CountDownLatch stop;
 
 	/**
 	 * Constructs a signal handler
-	 * @param logger the logger in which messages broadcast and delivered
-	 *                  by the process are written to
+	 * @param loggers the loggers in which messages broadcast and delivered
+	 *                  by the processes of the JVM are written to
 	 */
-	public ProcessSigHandler(Logger logger) {
+	public ProcessSigHandler(Logger... loggers) {
 		SigHandlerUsr2 sigHandlerUsr2 = new SigHandlerUsr2(this);
 		SigHandlerInt sigHandlerTerm = new SigHandlerInt(this);
 		SigHandlerTerm sigHandlerInt = new SigHandlerTerm(this);
@@ -32,43 +33,60 @@ public class ProcessSigHandler extends Thread {
 		Signal.handle(signalTerm, sigHandlerTerm);
 		Signal.handle(signalUsr2, sigHandlerUsr2);
 
-		this.logger = logger;
-		waitForStart = new AtomicBoolean(true);
-		this.start();
+		this.loggers = loggers;
+		start = new CountDownLatch(1);
+		stop = new CountDownLatch(1);
 	}
 
 	/**
-	 * @return the logger in which messages broadcast and delivered
-	 * by the process are written to
+	 * @return the loggers in which messages broadcast and delivered
+	 * by the processes are written to
 	 */
-	private Logger getLogger() {
-		return logger;
+	private Logger[] getLoggers() {
+		return loggers;
 	}
 
 	/**
-	 * @return false if the signal handler received a USR2 signal (starting signal),
-	 * true otherwise
+	 * Block until the signal handler receives a USR2 signal (starting signal)
+	 *
+	 * @throws InterruptedException if the thread is interrupted while waiting
 	 */
-	AtomicBoolean waitForStart() {
-		return waitForStart;
+	void awaitStart() throws InterruptedException {
+		start.await();
 	}
 
 	/**
-	 * Set the waitForStart atomic boolean to false,
-	 * meaning the process can start broadcasting
+	 * Block until the signal handler receives a TERM or INT signal and has closed
+	 * the loggers, after which it exits the process
+	 *
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	void awaitStop() throws InterruptedException {
+		stop.await();
+	}
+
+	/**
+	 * Release the threads waiting for the start, meaning the process can start broadcasting
 	 */
 	private void setWaitForStart() {
-		waitForStart.set(false);
+		start.countDown();
 	}
 
-	public void run() {
-		while (!Thread.currentThread().isInterrupted()) {
+	/**
+	 * Close the loggers, which writes every record they still buffer, and exit the process.
+	 * The threads waiting for the stop are only released once the loggers are closed:
+	 * if only daemon threads are left then, the JVM may exit before System.exit is called.
+	 */
+	private void terminate() {
+		for (Logger logger : getLoggers()) {
 			try {
-				Thread.sleep(100);
-			} catch (Exception e) {
-				// exception
+				logger.close();
+			} catch (IOException e) {
+				e.printStackTrace();
 			}
 		}
+		stop.countDown();
+		System.exit(-1);
 	}
 
 	/**
@@ -103,12 +121,7 @@ public class ProcessSigHandler extends Thread {
 
 		@Override
 		public void handle(Signal signal) {
-			try {
-				p.getLogger().close();
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-			System.exit(-1);
+			p.terminate();
 		}
 	}
 
@@ -126,12 +139,7 @@ public class ProcessSigHandler extends Thread {
 
 		@Override
 		public void handle(Signal signal) {
-			try {
-				p.getLogger().close();
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-			System.exit(-1);
+			p.terminate();
 		}
 	}
 }
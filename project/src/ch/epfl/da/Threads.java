@@ -0,0 +1,53 @@
+package ch.epfl.da;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads of the process runtime (perfect link loops and delivery workers).
+ *
+ * With the system property da.threads=virtual they are virtual threads, which block
+ * without holding a core, so that many processes can run in the same JVM. Virtual
+ * threads need Java 21; on older JVMs platform threads are used instead. The default
+ * (da.threads=platform) uses platform threads.
+ */
+public final class Threads {
+
+    private static final ThreadFactory FACTORY = create(System.getProperty("da.threads", "platform"));
+
+    private Threads() {
+    }
+
+    /**
+     * @return the factory of the threads of the runtime
+     */
+    public static ThreadFactory factory() {
+        return FACTORY;
+    }
+
+    /**
+     * @param task the task run by the thread
+     * @return a new thread of the runtime, not started
+     */
+    public static Thread newThread(Runnable task) {
+        return FACTORY.newThread(task);
+    }
+
+    private static ThreadFactory create(String mode) {
+        switch (mode) {
+            case "platform":
+                return Thread::new;
+            case "virtual":
+                try {
+                    // Thread.ofVirtual().factory(), looked up so that the code runs on older JVMs
+                    Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                    return (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+                            .getMethod("factory").invoke(builder);
+                } catch (ReflectiveOperationException e) {
+                    System.err.println("Virtual threads are not available, using platform threads");
+                    return Thread::new;
+                }
+            default:
+                throw new IllegalArgumentException("Unknown thread mode " + mode);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ch.epfl.da.broadcast;
+
+import java.util.Arrays;
+
+/**
+ * The acks of the messages of one origin that have not been delivered yet:
+ * an open addressing table (linear probing) from the sequence number of a message
+ * to the bitmask of the processes which have it, bit pid - 1 being set for process pid.
+ * Nothing is boxed and acking a message does not allocate, so it supports at most
+ * {@link #MAX_PROCESSES} processes.
+ *
+ * The table is not thread-safe.
+ */
+class AckTable {
+
+    static final int MAX_PROCESSES = Long.SIZE;
+    private static final int FREE = -1;
+
+    private int[] keys;
+    private long[] masks;
+    private int size;
+
+    /**
+     * @param expected the number of messages expected to be pending at the same time
+     */
+    AckTable(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(2, 2 * expected - 1)) << 1;
+        keys = new int[capacity];
+        masks = new long[capacity];
+        Arrays.fill(keys, FREE);
+    }
+
+    /**
+     * Record that a process has a message, adding the message if it is not in the table.
+     *
+     * @param seq the sequence number of the message
+     * @param pid the ID of the process
+     * @return the bitmask of the processes which have the message
+     */
+    long ack(int seq, int pid) {
+        int i = indexOf(seq);
+        if (keys[i] == FREE) {
+            keys[i] = seq;
+            masks[i] = 0;
+            if (++size * 2 > keys.length) {
+                grow();
+                i = indexOf(seq);
+            }
+        }
+        masks[i] |= 1L << (pid - 1);
+        return masks[i];
+    }
+
+    /**
+     * @param seq the sequence number of a message
+     * @return the bitmask of the processes which have the message, 0 if it is not in the table
+     */
+    long get(int seq) {
+        return masks[indexOf(seq)];
+    }
+
+    /**
+     * @param seq the sequence number of a message
+     * @return true if the message is in the table
+     */
+    boolean contains(int seq) {
+        return keys[indexOf(seq)] == seq;
+    }
+
+    /**
+     * Remove a message from the table, shifting back the messages that were placed
+     * after it so that no tombstone is left.
+     *
+     * @param seq the sequence number of the message
+     */
+    void remove(int seq) {
+        int mask = keys.length - 1;
+        int hole = indexOf(seq);
+        if (keys[hole] == FREE) {
+            return;
+        }
+        --size;
+
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (keys[i] == FREE) {
+                break;
+            }
+            int home = slot(keys[i]);
+            // move the entry into the hole unless its home is between the hole and i
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                masks[hole] = masks[i];
+                hole = i;
+            }
+        }
+        keys[hole] = FREE;
+        masks[hole] = 0;
+    }
+
+    /**
+     * @return the number of messages in the table
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the index of the slot holding seq, or of the free slot where it would be added
+     */
+    private int indexOf(int seq) {
+        int mask = keys.length - 1;
+        int i = slot(seq);
+        while (keys[i] != FREE && keys[i] != seq) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private int slot(int seq) {
+        int h = seq * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (keys.length - 1);
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        long[] oldMasks = masks;
+        keys = new int[2 * oldKeys.length];
+        masks = new long[2 * oldMasks.length];
+        Arrays.fill(keys, FREE);
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != FREE) {
+                int j = indexOf(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                masks[j] = oldMasks[i];
+            }
+        }
+    }
+}
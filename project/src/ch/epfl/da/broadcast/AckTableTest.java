@@ -0,0 +1,56 @@
+package ch.epfl.da.broadcast;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AckTableTest {
+    @Test
+    public void testAck(){
+        AckTable table = new AckTable(4);
+
+        assertEquals(0b1, table.ack(3, 1));
+        assertEquals(0b101, table.ack(3, 3));
+        assertEquals(0b101, table.ack(3, 1));
+        assertEquals(1L << 63, table.ack(4, 64));
+        assertTrue(table.contains(3));
+        assertFalse(table.contains(5));
+        assertEquals(2, table.size());
+
+        table.remove(3);
+        assertFalse(table.contains(3));
+        assertTrue(table.contains(4));
+        assertEquals(0b10, table.ack(3, 2));
+    }
+
+    @Test
+    public void testMatchesHashMap(){
+        AckTable table = new AckTable(2);
+        Map<Integer, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            int seq = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                table.remove(seq);
+                expected.remove(seq);
+            } else {
+                int pid = 1 + random.nextInt(64);
+                long mask = expected.getOrDefault(seq, 0L) | 1L << (pid - 1);
+                expected.put(seq, mask);
+                assertEquals(mask, table.ack(seq, pid));
+            }
+        }
+
+        assertEquals(expected.size(), table.size());
+        for (int seq = 0; seq < 500; seq++) {
+            assertEquals(expected.containsKey(seq), table.contains(seq));
+        }
+    }
+}
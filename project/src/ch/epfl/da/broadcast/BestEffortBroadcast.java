@@ -8,15 +8,18 @@ import ch.epfl.da.Callback;
 import ch.epfl.da.Process;
 import ch.epfl.da.message.Message;
 import ch.epfl.da.perfectLink.PerfectLink;
+import ch.epfl.da.perfectLink.Transport;
 
 /**
- * This class implements a BestEffortBroadcast using UDP
+ * This class implements a BestEffortBroadcast using UDP, or the transport
+ * selected by da.pl.transport (see {@link Transport#open(InetSocketAddress)})
  */
 public class BestEffortBroadcast {
 
 	private Process broadcaster;
 	private PerfectLink link;
 	private Callback<Message> bebDeliver;
+	private int quorum;
 
 	/**
 	 * Constructor of the class
@@ -25,6 +28,17 @@ public class BestEffortBroadcast {
 	 * @param bebDeliver  the CallBack to use when a message is delivered
 	 */
 	public BestEffortBroadcast(Process broadcaster, Callback<Message> bebDeliver) throws SocketException {
+		this(broadcaster, bebDeliver, openTransport(broadcaster));
+	}
+
+	/**
+	 * Constructor of the class
+	 *
+	 * @param broadcaster the originator of the broadcast
+	 * @param bebDeliver  the CallBack to use when a message is delivered
+	 * @param transport   the transport bound to the address of broadcaster
+	 */
+	public BestEffortBroadcast(Process broadcaster, Callback<Message> bebDeliver, Transport transport) {
 		if (broadcaster == null || broadcaster.getInetSocketAddress() == null) {
 			throw new NullPointerException("The broadcaster cannot be null");
 		}
@@ -37,16 +51,67 @@ public class BestEffortBroadcast {
 
 		// the callBack of the perfect link is equivalent to deliver in
 		// BestEffortBroadcast
-		link = new PerfectLink(broadcaster.getInetSocketAddress(), bebDeliver, broadcaster);
+		link = new PerfectLink(transport, bebDeliver, broadcaster);
 		link.start();
+
+		// a majority of correct processes is assumed, so do not wait for the
+		// (peers.length - 1) / 2 processes which may have crashed
+		quorum = broadcaster.getOthers().length - (broadcaster.getPeers().length - 1) / 2;
+	}
+
+	static Transport openTransport(Process broadcaster) throws SocketException {
+		if (broadcaster == null || broadcaster.getInetSocketAddress() == null) {
+			throw new NullPointerException("The broadcaster cannot be null");
+		}
+		return Transport.open(broadcaster.getInetSocketAddress());
 	}
 
 	/**
-	 * Broadcast the message m to all peers of broadcaster
+	 * Broadcast the message m to all peers of broadcaster. Blocks while the
+	 * perfect link has too many messages waiting for most of the peers.
 	 *
 	 * @param message the message that needs to be broadcast
 	 */
 	public void broadcast(Message message) {
+		try {
+			link.awaitCapacity(quorum);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		relay(message);
+	}
+
+	/**
+	 * Stop the perfect link, see {@link PerfectLink#close()}
+	 *
+	 * @throws IOException if the transport cannot be closed
+	 */
+	public void close() throws IOException {
+		link.close();
+	}
+
+	/**
+	 * Send a message to a single peer without waiting for the perfect link.
+	 *
+	 * @param message the message to send
+	 * @param pid     the ID of the peer
+	 */
+	public void send(Message message, int pid) {
+		try {
+			link.send(message, broadcaster.getPeers()[pid - 1]);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Broadcast the message m to all peers of broadcaster without waiting for the
+	 * perfect link. Used from the delivery callbacks, which run on the receive
+	 * thread of the perfect link and must not block it.
+	 *
+	 * @param message the message that needs to be broadcast
+	 */
+	public void relay(Message message) {
 		bebDeliver.onSuccess(message);
 		for (InetSocketAddress target : broadcaster.getOthers()) {
 			try {
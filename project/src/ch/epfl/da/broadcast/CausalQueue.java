@@ -0,0 +1,106 @@
+package ch.epfl.da.broadcast;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import ch.epfl.da.Callback;
+import ch.epfl.da.message.LCBMessage;
+
+/**
+ * Delivers the messages of localized causal broadcast once their dependencies are
+ * delivered: a message whose vector clock is V can be delivered when, for every
+ * process i, at least V[i] messages of i have been delivered. Only the entries
+ * present in the sparse vector of a message are checked.
+ *
+ * A message that cannot be delivered waits on the first entry of its vector that is
+ * not satisfied yet, indexed by the number of deliveries it waits for. Delivering the
+ * n-th message of a process only looks at the messages waiting for exactly n deliveries
+ * of that process, which are then delivered or moved to their next unsatisfied entry,
+ * so a message is examined at most once per entry of its vector however many messages
+ * are pending.
+ */
+class CausalQueue {
+
+    private final int[] received;
+    private final List<Map<Integer, List<LCBMessage>>> waiting;
+    private final Callback<LCBMessage> deliver;
+    private final Queue<LCBMessage> deliverable;
+    private int size;
+
+    /**
+     * @param nbrProcesses the number of processes
+     * @param deliver      the method to call when delivering messages, never called concurrently
+     */
+    CausalQueue(int nbrProcesses, Callback<LCBMessage> deliver) {
+        this.received = new int[nbrProcesses];
+        this.waiting = new ArrayList<>(nbrProcesses);
+        for (int i = 0; i < nbrProcesses; ++i) {
+            waiting.add(i, new HashMap<>());
+        }
+        this.deliver = deliver;
+        this.deliverable = new ArrayDeque<>();
+        this.size = 0;
+    }
+
+    /**
+     * Deliver a message if its dependencies are delivered, and then the pending messages
+     * it unblocks. Otherwise the message waits.
+     *
+     * @param m the message
+     */
+    synchronized void add(LCBMessage m) {
+        if (!park(m, 0)) {
+            deliverable.add(m);
+            drain();
+        }
+    }
+
+    /**
+     * @return the number of messages waiting for their dependencies
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    private void drain() {
+        LCBMessage m;
+        while ((m = deliverable.poll()) != null) {
+            deliver.onSuccess(m);
+
+            int i = m.getOrigin() - 1;
+            List<LCBMessage> woken = waiting.get(i).remove(++received[i]);
+            if (woken != null) {
+                size -= woken.size();
+                for (LCBMessage w : woken) {
+                    // the entries before the one of i were satisfied when w was parked on i
+                    if (!park(w, w.indexOf(i + 1) + 1)) {
+                        deliverable.add(w);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Make m wait on the first entry of its vector, from index from, that is not satisfied.
+     *
+     * @param m    the message
+     * @param from the index of the first entry to check
+     * @return true if m waits, false if it can be delivered
+     */
+    private boolean park(LCBMessage m, int from) {
+        for (int k = from; k < m.size(); ++k) {
+            int i = m.pid(k) - 1;
+            if (m.value(k) > received[i]) {
+                waiting.get(i).computeIfAbsent(m.value(k), value -> new ArrayList<>()).add(m);
+                ++size;
+                return true;
+            }
+        }
+        return false;
+    }
+}
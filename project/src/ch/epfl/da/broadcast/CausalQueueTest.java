@@ -0,0 +1,74 @@
+package ch.epfl.da.broadcast;
+
+import ch.epfl.da.message.LCBMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CausalQueueTest {
+    @Test
+    public void testWaitForDependencies(){
+        List<LCBMessage> delivered = new ArrayList<>();
+        CausalQueue queue = new CausalQueue(2, delivered::add);
+
+        // the first message of 2 depends on two messages of 1
+        LCBMessage m2 = message(2, 2, 0);
+        queue.add(m2);
+        queue.add(message(1, 1, 0));
+        assertEquals(0, delivered.size());
+        assertEquals(2, queue.size());
+
+        queue.add(message(1, 0, 0));
+        assertEquals(3, delivered.size());
+        assertEquals(m2, delivered.get(2));
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testLargeBacklog(){
+        int n = 4;
+        int perProcess = 25_000;
+        List<LCBMessage> delivered = new ArrayList<>();
+        CausalQueue queue = new CausalQueue(n, delivered::add);
+
+        // message k of process p depends on message k - 1 of every process
+        List<LCBMessage> messages = new ArrayList<>();
+        for (int p = 1; p <= n; p++) {
+            for (int k = 0; k < perProcess; k++) {
+                int[] vector = new int[n];
+                for (int i = 0; i < n; i++) {
+                    vector[i] = (i == p - 1) ? k : Math.max(0, k - 1);
+                }
+                messages.add(message(p, vector));
+            }
+        }
+        Collections.shuffle(messages, new Random(42));
+        for (LCBMessage m : messages) {
+            queue.add(m);
+        }
+
+        assertEquals(n * perProcess, delivered.size());
+        assertEquals(0, queue.size());
+        int[] count = new int[n];
+        for (LCBMessage m : delivered) {
+            for (int i = 0; i < n; i++) {
+                assertTrue(m.get(i + 1) <= count[i]);
+            }
+            count[m.getOrigin() - 1]++;
+        }
+    }
+
+    private static LCBMessage message(int origin, int... vector) {
+        int[] pids = new int[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            pids[i] = i + 1;
+        }
+        return new LCBMessage(origin, LCBMessage.encode(pids, vector));
+    }
+}
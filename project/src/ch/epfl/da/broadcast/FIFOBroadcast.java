@@ -1,25 +1,27 @@
 package ch.epfl.da.broadcast;
 
-import java.math.BigInteger;
 import java.net.SocketException;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import ch.epfl.da.Callback;
 import ch.epfl.da.Process;
 import ch.epfl.da.message.FIFOMessage;
 import ch.epfl.da.message.Message;
+import ch.epfl.da.metrics.Metrics;
 
 /**
  * Implements FIFO broadcast on top of {@link UniformReliableBroadcast}.
  *
+ * The messages of each origin go through a {@link ReorderBuffer} of
+ * da.fifo.window messages (default 1024), indexed by the sequence number
+ * given by the uniform reliable broadcast.
+ *
+ * The gauges fifo.delivered and fifo.reorderDepth give the number of messages
+ * delivered and waiting for a predecessor (see {@link Metrics}).
  */
 public class FIFOBroadcast {
+	private static final int WINDOW = Integer.getInteger("da.fifo.window", 1024);
 	private final UniformReliableBroadcast urb;
-	private final ArrayList<ConcurrentSkipListSet<FIFOMessage>> pending;
-	private final AtomicIntegerArray seq;
+	private final ReorderBuffer[] pending;
 	private final Callback<FIFOMessage> fifoDeliver;
 	
 	/**
@@ -31,13 +33,27 @@ public class FIFOBroadcast {
 	public FIFOBroadcast(Process process, Callback<FIFOMessage> fifoDeliver) throws SocketException {
 
 		this.fifoDeliver = fifoDeliver;
+		Metrics metrics = Metrics.of(process.getPID());
 		int nbrProcesses = process.getPeers().length;
-		pending = new ArrayList<>(nbrProcesses);
+		pending = new ReorderBuffer[nbrProcesses];
 		for (int i = 0; i < nbrProcesses; ++i) {
-			pending.add(i, new ConcurrentSkipListSet<>());
+			pending[i] = new ReorderBuffer(WINDOW, m -> this.fifoDeliver.onSuccess(new FIFOMessage(m)));
 		}
-
-		seq = new AtomicIntegerArray(nbrProcesses);
+		// the next sequence number of an origin is the number of its messages delivered
+		metrics.gauge("fifo.delivered", () -> {
+			long delivered = 0;
+			for (ReorderBuffer buffer : pending) {
+				delivered += buffer.next();
+			}
+			return delivered;
+		});
+		metrics.gauge("fifo.reorderDepth", () -> {
+			long depth = 0;
+			for (ReorderBuffer buffer : pending) {
+				depth += buffer.size();
+			}
+			return depth;
+		});
 
 		urb = new UniformReliableBroadcast(process, new Callback<Message>() {
 
@@ -57,32 +73,12 @@ public class FIFOBroadcast {
 	}
 
 	/**
-	 * Deliver a message
+	 * Deliver a message, and the messages of the same origin that were waiting for it
+	 * (package-private for the benchmarks)
 	 * @param message the message to deliver
 	 */
-	private void urbDeliver(Message message) {
-		int id = new BigInteger(message.getData()).intValue();
-		int pid = message.getOrigin() - 1;
-		int curId = seq.get(pid);
-		if (curId == (id - 1)) {
-			fifoDeliver.onSuccess(new FIFOMessage(message));
-			++curId;
-			//Deliver message for process pid
-			Iterator<FIFOMessage> it = pending.get(pid).iterator();
-			while (it.hasNext()) {
-				FIFOMessage m = it.next();
-				if (m.sequenceID() -1 == curId) {
-					fifoDeliver.onSuccess(m);
-					++curId;
-					it.remove();
-				} else {
-					break; // The set is sorted
-				}
-			}
-			seq.set(pid, curId);
-		} else {
-			pending.get(pid).add(new FIFOMessage(message));
-		}
+	void urbDeliver(Message message) {
+		pending[message.getOrigin() - 1].add(message);
 	}
 
 }
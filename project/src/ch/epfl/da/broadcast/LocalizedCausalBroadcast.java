@@ -1,40 +1,53 @@
 package ch.epfl.da.broadcast;
 
 import java.net.SocketException;
-import java.nio.ByteBuffer;
-import java.util.*;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import ch.epfl.da.Callback;
 import ch.epfl.da.Process;
 import ch.epfl.da.message.LCBMessage;
 import ch.epfl.da.message.Message;
+import ch.epfl.da.metrics.Metrics;
 
 /**
  * Implements Localized Causal Broadcast on top of urb.
+ * The messages whose dependencies are not delivered yet wait in a {@link CausalQueue}.
+ * A message only carries the entries of its vector clock for the processes which
+ * affect its origin and for the origin itself (see {@link LCBMessage}), the others
+ * are always 0.
  *
+ * The messages delivered are counted in lcb.delivered and the messages waiting for
+ * their dependencies in lcb.pending (see {@link Metrics}).
  */
 public class LocalizedCausalBroadcast {
     private final UniformReliableBroadcast urb;
     private final Process process;
     private final Callback<LCBMessage> callback;
     private final int[] affected;
-    private final AtomicIntegerArray received;
+    private final int[] dependencies;
     private final AtomicIntegerArray vClock;
-    private final List<LCBMessage> pending;
+    private final CausalQueue pending;
+    private final LongAdder delivered;
 
     public LocalizedCausalBroadcast(Process process, Callback<LCBMessage> callback) throws SocketException {
-        urb = new UniformReliableBroadcast(process, this::urbDeliver);
         this.process = process;
         this.callback = callback;
 
-        affected = process.getAffectedBy();
+        affected = (process.getAffectedBy() == null) ? new int[0] : process.getAffectedBy();
+        dependencies = IntStream.concat(Arrays.stream(affected), IntStream.of(process.getPID()))
+                .distinct().sorted().toArray();
 
         int size = process.getPeers().length;
-        received = new AtomicIntegerArray(size);
         vClock = new AtomicIntegerArray(size);
 
-        pending = Collections.synchronizedList(new ArrayList<>());
+        pending = new CausalQueue(size, this::lcbDeliver);
+        Metrics metrics = Metrics.of(process.getPID());
+        delivered = metrics.counter("lcb.delivered");
+        metrics.gauge("lcb.pending", pending::size);
+        urb = new UniformReliableBroadcast(process, this::urbDeliver);
     }
 
 
@@ -43,104 +56,49 @@ public class LocalizedCausalBroadcast {
      */
     public void broadcast() {
         int pid = process.getPID();
-        ByteBuffer buffer = ByteBuffer.allocate(4 * process.getPeers().length);
-        for (int i = 0; i < process.getPeers().length; ++i) {
-            int value;
+        int[] values = new int[dependencies.length];
+        for (int k = 0; k < dependencies.length; ++k) {
+            int i = dependencies[k] - 1;
             if (i == pid - 1) {
-                value = vClock.getAndIncrement(i);
+                values[k] = vClock.getAndIncrement(i);
             } else {
-                value = vClock.get(i);
+                values[k] = vClock.get(i);
             }
-            buffer.putInt(value);
         }
 
 
-        Message toSend = new Message(pid, pid, buffer.array());
+        Message toSend = new Message(pid, pid, LCBMessage.encode(dependencies, values));
         urb.broadcast(toSend);
     }
 
 
     /**
-     * LCB-deliver a message.
+     * LCB-deliver a message, now or once its dependencies are delivered
+     * (package-private for the benchmarks)
      * @param message the message to deliver
      */
-    private void urbDeliver(Message message) {
-        int numProcesses = process.getPeers().length;
-
-        LCBMessage lcbMessage = new LCBMessage(message.getOrigin(), message.getData());
-
-        // Get our received vector
-        int[] localReceived = new int[numProcesses];
-        for (int i = 0; i < numProcesses; ++i) {
-            localReceived[i] = received.get(i);
-        }
-
-        if (isVectorSmaller(lcbMessage.getData(), localReceived)) { //We can deliver the message
-            callback.onSuccess(lcbMessage);
-
-            // Increment received and maybe vClock if the origin affects the process
-            localReceived[message.getOrigin() - 1] = incrementVClocks(message.getOrigin());
-
-            // Deliver other messages in pending if possible
-            synchronized(pending){
-                boolean noMoreToDeliver = false;
-                while (!noMoreToDeliver) {
-                    noMoreToDeliver = true;
-
-                    Iterator<LCBMessage> it = pending.iterator();
-                    while (it.hasNext()) {
-                        LCBMessage m = it.next();
-                        if (isVectorSmaller(m.getData(), localReceived)) {
-                            it.remove();
-
-                            localReceived[m.getOrigin() - 1] = incrementVClocks(m.getOrigin());
-
-                            callback.onSuccess(m);
-
-                            noMoreToDeliver = false;
-                        }
-                    }
-                }
-            }
-        } else {
-            pending.add(lcbMessage);
-        }
-
+    void urbDeliver(Message message) {
+        pending.add(new LCBMessage(message.getOrigin(), message.getData()));
     }
 
     /**
-     * @param v1 the first vector clock
-     * @param v2 the second vector clock
-     * @return true if every component of v1 is smaller or equal to v2,
-     * false otherwise
+     * Deliver a message whose dependencies are delivered, and count it in the
+     * vector clock if its origin affects the process
+     * @param m the message to deliver
      */
-    private boolean isVectorSmaller(int[] v1, int[] v2) {
-        for (int i = 0; i < v1.length; i++) {
-            if (v1[i] > v2[i]) {
-                return false;
-            }
-        }
+    private void lcbDeliver(LCBMessage m) {
+        delivered.increment();
+        callback.onSuccess(m);
 
-        return true;
-    }
-
-    /**
-     * @param origin origin of the message
-     * @return the new value of the received vector clock for the
-     */
-    private int incrementVClocks(int origin) {
-        int result = received.incrementAndGet(origin - 1);
-        
-        if(origin != process.getPID()){
+        int origin = m.getOrigin();
+        if (origin != process.getPID()) {
             for (int pid : affected) {
                 if (pid == origin) {
                     vClock.incrementAndGet(origin - 1);
-                    return result;
+                    return;
                 }
             }
         }
-
-        return result;
     }
 
 }
@@ -0,0 +1,111 @@
+package ch.epfl.da.broadcast;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import ch.epfl.da.Callback;
+import ch.epfl.da.message.Message;
+
+/**
+ * Delivers the messages of one origin in the order of their sequence numbers
+ * (see {@link Message#getSeq()}), whatever the order in which they are added.
+ *
+ * A message waiting for its predecessors is stored in the slot seq mod capacity of
+ * a circular buffer. Messages too far ahead to fit in the buffer overflow to a map
+ * and are taken back when their turn comes. Any thread can add messages, but only
+ * one at a time delivers: the thread which finds no other delivering drains the
+ * buffer for all of them, so the callback is never called concurrently.
+ */
+class ReorderBuffer {
+
+    private final AtomicReferenceArray<Message> slots;
+    private final int mask;
+    private final Map<Integer, Message> overflow;
+    private final AtomicInteger overflowSize;
+    private final AtomicInteger wip;
+    private final Callback<Message> deliver;
+    private volatile int next;
+
+    /**
+     * @param capacity the number of messages the buffer holds, rounded up to a power of two
+     * @param deliver  the method to call when delivering messages
+     */
+    ReorderBuffer(int capacity, Callback<Message> deliver) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.overflow = new ConcurrentHashMap<>();
+        this.overflowSize = new AtomicInteger();
+        this.wip = new AtomicInteger();
+        this.deliver = deliver;
+        this.next = 0;
+    }
+
+    /**
+     * Add a message and deliver every message that is not waiting for a predecessor anymore.
+     * Each sequence number must be added once.
+     *
+     * @param m the message
+     */
+    void add(Message m) {
+        int seq = m.getSeq();
+        if (seq - next < slots.length()) {
+            slots.set(seq & mask, m);
+        } else {
+            overflow.put(seq, m);
+            overflowSize.incrementAndGet();
+        }
+
+        if (wip.getAndIncrement() != 0) {
+            return; // the delivering thread will see the message
+        }
+        int missed = 1;
+        do {
+            drain();
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Deliver the messages following the last one delivered, called by one thread at a time.
+     */
+    private void drain() {
+        int seq = next;
+        while (true) {
+            int slot = seq & mask;
+            Message m = slots.get(slot);
+            if (m != null && m.getSeq() == seq) {
+                slots.set(slot, null);
+            } else if (overflowSize.get() > 0 && (m = overflow.remove(seq)) != null) {
+                overflowSize.decrementAndGet();
+            } else {
+                break;
+            }
+            deliver.onSuccess(m);
+            next = ++seq;
+        }
+    }
+
+    /**
+     * @return the number of messages waiting for a predecessor, read without
+     * synchronization so only an estimate while messages are added
+     */
+    int size() {
+        int size = overflowSize.get();
+        for (int i = 0; i < slots.length(); ++i) {
+            if (slots.get(i) != null) {
+                ++size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the sequence number of the next message to deliver
+     */
+    int next() {
+        return next;
+    }
+}
@@ -0,0 +1,81 @@
+package ch.epfl.da.broadcast;
+
+import ch.epfl.da.message.Message;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ReorderBufferTest {
+    @Test
+    public void testDeliverInOrder(){
+        List<Integer> delivered = new ArrayList<>();
+        ReorderBuffer buffer = new ReorderBuffer(4, m -> delivered.add(m.getSeq()));
+
+        buffer.add(message(1));
+        buffer.add(message(2));
+        assertEquals(0, delivered.size());
+
+        buffer.add(message(0));
+        assertEquals(3, buffer.next());
+        assertEquals(0, delivered.get(0));
+        assertEquals(2, delivered.get(2));
+    }
+
+    @Test
+    public void testOverflow(){
+        List<Integer> delivered = new ArrayList<>();
+        ReorderBuffer buffer = new ReorderBuffer(16, m -> delivered.add(m.getSeq()));
+
+        // a random order, most messages being too far ahead to fit in the buffer
+        List<Integer> seqs = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            seqs.add(i);
+        }
+        Collections.shuffle(seqs, new Random(42));
+        for (int seq : seqs) {
+            buffer.add(message(seq));
+        }
+
+        assertEquals(5000, delivered.size());
+        for (int i = 0; i < delivered.size(); i++) {
+            assertEquals(i, delivered.get(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        List<Integer> delivered = new ArrayList<>();
+        ReorderBuffer buffer = new ReorderBuffer(64, m -> delivered.add(m.getSeq()));
+        int total = 200_000;
+
+        // two threads add the even and odd sequence numbers
+        Thread[] writers = new Thread[2];
+        for (int t = 0; t < writers.length; t++) {
+            int first = t;
+            writers[t] = new Thread(() -> {
+                for (int seq = first; seq < total; seq += 2) {
+                    buffer.add(message(seq));
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(total, buffer.next());
+        assertEquals(total, delivered.size());
+        for (int i = 0; i < total; i++) {
+            assertEquals(i, delivered.get(i));
+        }
+    }
+
+    private static Message message(int seq) {
+        return new Message(1, seq, 1, new byte[0]);
+    }
+}
@@ -1,28 +1,61 @@
 package ch.epfl.da.broadcast;
 
+import java.io.IOException;
 import java.net.SocketException;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import ch.epfl.da.Callback;
 import ch.epfl.da.Process;
 import ch.epfl.da.message.Message;
+import ch.epfl.da.message.MessageKind;
+import ch.epfl.da.metrics.Histogram;
+import ch.epfl.da.metrics.Metrics;
+import ch.epfl.da.perfectLink.SequenceSet;
+import ch.epfl.da.perfectLink.Transport;
 
 /**
  * This class implements a UniformReliableBroadcast on top of
  * {@link BestEffortBroadcast} using UDP For more information, see "Algorithm
  * 3.5: Majority-Ack Uniform Reliable Broadcast" in "Introduction to Reliable
  * and Secure Distributed Programming"
+ *
+ * With the system property da.urb.relay=ack, a process that receives a message
+ * relays only its ID (an ACK) instead of a full copy, which saves the n^2 copies of
+ * the payload. A process that gets an ACK for a message whose payload it is missing
+ * asks the sender of the ACK for it (a REQUEST), once per sender. The ack of a
+ * process still means that it has the payload, so a message is delivered once a
+ * majority has it, as in the majority-ack algorithm: if a process delivers it, a
+ * correct process of that majority has sent its ACK to every process and answers
+ * their REQUESTs. The payload of a message is kept until every process has acked it.
+ *
+ * The messages broadcast, relayed and delivered are counted in urb.broadcast,
+ * urb.relayed and urb.delivered, the messages waiting for acks in urb.acks and the
+ * payloads kept in urb.payloads (see {@link Metrics}). urb.latency is the time in
+ * microseconds from the broadcast of a message of this process to its delivery.
  */
 public class UniformReliableBroadcast {
 
-	private final Map<Message, Boolean> delivered; // There is no concurrent sets...
-	private final Map<Message, Boolean> pending;
-	private final Map<Message, Set<Integer>> ack;
+	private static final int PENDING_MESSAGES = 1024;
+	private static final boolean RELAY_ACKS = "ack".equals(System.getProperty("da.urb.relay"));
+	private static final int LATENCY_RING = 4096;
+
+	private final SequenceSet[] delivered; // per origin, collapses into a watermark
+	private final AckTable[] ack; // per origin, only the messages not delivered yet
+	private final List<Map<Integer, Message>> payloads; // per origin, when relaying ACKs
+	private final boolean relayAcks;
+	private final long allProcesses;
+	private final AtomicInteger sequenceNumber;
 	private final int processesMajority;
+	private final long[] broadcastTimes; // per own message, guarded by its delivered set
+	private final LongAdder broadcasts;
+	private final LongAdder relayed;
+	private final LongAdder deliveries;
+	private final Histogram latency;
 	private Process broadcaster;
 	private Callback<Message> urbDeliver;
 	private BestEffortBroadcast beb;
@@ -34,6 +67,18 @@ public class UniformReliableBroadcast {
 	 * @param urbDeliver  the CallBack to use when a message is delivered
 	 */
 	public UniformReliableBroadcast(Process broadcaster, Callback<Message> urbDeliver) throws SocketException {
+		this(broadcaster, urbDeliver, BestEffortBroadcast.openTransport(broadcaster), RELAY_ACKS);
+	}
+
+	/**
+	 * Constructor of the class
+	 *
+	 * @param broadcaster the originator of the broadcast
+	 * @param urbDeliver  the CallBack to use when a message is delivered
+	 * @param transport   the transport bound to the address of broadcaster
+	 * @param relayAcks   true to relay ACKs instead of copies of the messages, as with da.urb.relay=ack
+	 */
+	UniformReliableBroadcast(Process broadcaster, Callback<Message> urbDeliver, Transport transport, boolean relayAcks) {
 		if (broadcaster == null || broadcaster.getInetSocketAddress() == null || broadcaster.getPeers() == null) {
 			throw new NullPointerException("The broadcaster cannot be null");
 		}
@@ -43,54 +88,197 @@ public class UniformReliableBroadcast {
 
 		this.broadcaster = broadcaster;
 		this.urbDeliver = urbDeliver;
+		this.relayAcks = relayAcks;
 
-		delivered = new ConcurrentHashMap<>();
-		pending = new ConcurrentHashMap<>();
-		ack = new ConcurrentHashMap<>();
+		int nbrProcesses = broadcaster.getPeers().length;
+		if (nbrProcesses > AckTable.MAX_PROCESSES) {
+			throw new IllegalArgumentException("At most " + AckTable.MAX_PROCESSES + " processes are supported");
+		}
+		delivered = new SequenceSet[nbrProcesses];
+		ack = new AckTable[nbrProcesses];
+		payloads = new ArrayList<>(nbrProcesses);
+		for (int i = 0; i < nbrProcesses; ++i) {
+			delivered[i] = new SequenceSet();
+			ack[i] = new AckTable(PENDING_MESSAGES);
+			payloads.add(i, new HashMap<>());
+		}
+		allProcesses = (nbrProcesses == Long.SIZE) ? -1L : (1L << nbrProcesses) - 1;
+		sequenceNumber = new AtomicInteger();
 
-		processesMajority = (int) Math.ceil(broadcaster.getPeers().length / 2.0);
+		processesMajority = (int) Math.ceil(nbrProcesses / 2.0);
+
+		broadcastTimes = new long[LATENCY_RING];
+		Metrics metrics = Metrics.of(broadcaster.getPID());
+		broadcasts = metrics.counter("urb.broadcast");
+		relayed = metrics.counter("urb.relayed");
+		deliveries = metrics.counter("urb.delivered");
+		latency = metrics.histogram("urb.latency");
+		// the sizes are read without synchronization, an estimate is enough
+		metrics.gauge("urb.acks", () -> {
+			long size = 0;
+			for (AckTable table : ack) {
+				size += table.size();
+			}
+			return size;
+		});
+		if (relayAcks) {
+			metrics.gauge("urb.payloads", () -> {
+				long size = 0;
+				for (Map<Integer, Message> held : payloads) {
+					size += held.size();
+				}
+				return size;
+			});
+		}
 
 		beb = new BestEffortBroadcast(broadcaster, new Callback<Message>() {
 			@Override
 			public void onSuccess(Message message) {
 				bebDeliver(message);
 			}
-		});
+		}, transport);
 	}
 
+	/**
+	 * Record that the sender of message has it, relay the message the first time it is
+	 * seen and deliver it once a majority has it. A message that has been delivered is
+	 * ignored: its acks are not needed anymore and it has already been relayed.
+	 * The state of an origin is guarded by its delivered set, so setting the bit of the
+	 * sender and counting the bits of the mask happen in one step.
+	 *
+	 * @param message the message received
+	 */
 	private void bebDeliver(Message message) {
-		if (ack.containsKey(message)) {
-			ack.get(message).add(message.getSenderPID());
-		} else {
-			Set<Integer> ackProcesses = new HashSet<>();
-			ackProcesses.add(message.getSenderPID());
-			ack.put(message, ackProcesses);
+		if (relayAcks) {
+			bebDeliverRelayingAcks(message);
+			return;
 		}
 
-		if (!pending.containsKey(message)) {
-			pending.put(message, true);
-			beb.broadcast(message.resend(broadcaster.getPID()));
+		int origin = message.getOrigin() - 1;
+		int seq = message.getSeq();
+		SequenceSet deliveredFrom = delivered[origin];
+		synchronized (deliveredFrom) {
+			if (deliveredFrom.contains(seq)) {
+				return;
+			}
+
+			AckTable pending = ack[origin];
+			if (!pending.contains(seq)) {
+				pending.ack(seq, message.getSenderPID());
+				// our own copy is beb-delivered by the relay, which adds our ack and checks the majority
+				relayed.increment();
+				beb.relay(message.resend(broadcaster.getPID()));
+				return;
+			}
+
+			long acks = pending.ack(seq, message.getSenderPID());
+			if (Long.bitCount(acks) >= processesMajority) {
+				pending.remove(seq);
+				deliveredFrom.add(seq);
+				deliver(message);
+			}
 		}
+	}
 
-		if (canDeliver(message) && !delivered.containsKey(message)) {
-			delivered.put(message, true);
-			urbDeliver.onSuccess(message);
+	/**
+	 * bebDeliver when relaying ACKs (see the class documentation). The acks of a message
+	 * are kept after its delivery, until every process has it.
+	 *
+	 * @param message the DATA, ACK or REQUEST received
+	 */
+	private void bebDeliverRelayingAcks(Message message) {
+		int origin = message.getOrigin() - 1;
+		int seq = message.getSeq();
+		int sender = message.getSenderPID();
+		SequenceSet deliveredFrom = delivered[origin];
+		synchronized (deliveredFrom) {
+			Map<Integer, Message> held = payloads.get(origin);
+			Message payload = held.get(seq);
+			if (payload == null && deliveredFrom.contains(seq)) {
+				return; // every process has it
+			}
+
+			AckTable pending = ack[origin];
+			switch (message.getKind()) {
+				case DATA:
+					if (payload == null) {
+						held.put(seq, message);
+						pending.ack(seq, sender);
+						// our own ACK is beb-delivered by the relay, which adds our ack and checks the majority
+						relayed.increment();
+						beb.relay(message.control(MessageKind.ACK, broadcaster.getPID()));
+						return;
+					}
+					break;
+				case ACK:
+					if (payload == null && (pending.get(seq) & (1L << (sender - 1))) == 0) {
+						beb.send(message.control(MessageKind.REQUEST, broadcaster.getPID()), sender);
+					}
+					break;
+				case REQUEST:
+					if (payload != null) {
+						beb.send(payload.resend(broadcaster.getPID()), sender);
+					}
+					return;
+			}
+
+			long acks = pending.ack(seq, sender);
+			if (payload == null) {
+				return;
+			}
+			if (Long.bitCount(acks) >= processesMajority && deliveredFrom.add(seq)) {
+				deliver(payload);
+			}
+			if (acks == allProcesses) {
+				pending.remove(seq);
+				held.remove(seq);
+			}
 		}
+	}
 
+	/**
+	 * URB-deliver a message, measuring its latency if this process broadcast it.
+	 * Called holding the delivered set of the origin of the message.
+	 *
+	 * @param message the message to deliver
+	 */
+	private void deliver(Message message) {
+		int seq = message.getSeq();
+		// skip the messages whose broadcast time was overwritten by a later broadcast
+		if (message.getOrigin() == broadcaster.getPID() && sequenceNumber.get() - seq <= LATENCY_RING) {
+			latency.record((System.nanoTime() - broadcastTimes[seq & (LATENCY_RING - 1)]) / 1000);
+		}
+		deliveries.increment();
+		urbDeliver.onSuccess(message);
 	}
 
 	/**
-	 * Broadcast the message m using BestEffortBroadcast
+	 * Broadcast the message m using BestEffortBroadcast. The message is given the
+	 * next sequence number of this process, which identifies it with its origin.
 	 *
 	 * @param m the message that needs to be sent
 	 */
 	public void broadcast(Message m) {
-		pending.put(m, true);
-		beb.broadcast(m); // beb broadcast does not send it back to yourself, it beb delivers it directly
+		Message numbered = new Message(m.getOrigin(), sequenceNumber.getAndIncrement(), m.getSenderPID(), m.getData());
+		SequenceSet deliveredFrom = delivered[numbered.getOrigin() - 1];
+		synchronized (deliveredFrom) {
+			broadcastTimes[numbered.getSeq() & (LATENCY_RING - 1)] = System.nanoTime();
+			ack[numbered.getOrigin() - 1].ack(numbered.getSeq(), broadcaster.getPID());
+			if (relayAcks) {
+				payloads.get(numbered.getOrigin() - 1).put(numbered.getSeq(), numbered);
+			}
+		}
+		broadcasts.increment();
+		beb.broadcast(numbered); // beb broadcast does not send it back to yourself, it beb delivers it directly
 	}
 
-	private boolean canDeliver(Message m) {
-		return ack.get(m).size() >= processesMajority;
+	/**
+	 * Stop the underlying perfect link, see {@link BestEffortBroadcast#close()}
+	 *
+	 * @throws IOException if the transport cannot be closed
+	 */
+	public void close() throws IOException {
+		beb.close();
 	}
 
 }
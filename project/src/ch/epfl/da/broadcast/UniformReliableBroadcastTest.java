@@ -0,0 +1,192 @@
+package ch.epfl.da.broadcast;
+
+import ch.epfl.da.Process;
+import ch.epfl.da.message.Message;
+import ch.epfl.da.perfectLink.FaultyTransport;
+import ch.epfl.da.perfectLink.MemoryTransport;
+import ch.epfl.da.perfectLink.PerfectLinkMessage;
+import ch.epfl.da.perfectLink.Transport;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * URB relaying ACKs (da.urb.relay=ack) between processes sharing the memory network
+ */
+public class UniformReliableBroadcastTest {
+
+    /**
+     * Drops the datagrams sent to some addresses
+     */
+    private static class Partition implements Transport {
+        private final Transport transport;
+        private final Set<SocketAddress> unreachable;
+
+        Partition(Transport transport, SocketAddress... unreachable) {
+            this.transport = transport;
+            this.unreachable = new HashSet<>(Arrays.asList(unreachable));
+        }
+
+        @Override
+        public void send(ByteBuffer datagram, SocketAddress target) throws IOException {
+            if (!unreachable.contains(target)) {
+                transport.send(datagram, target);
+            }
+        }
+
+        @Override
+        public InetSocketAddress receive(List<PerfectLinkMessage> plms) throws IOException {
+            return transport.receive(plms);
+        }
+
+        @Override
+        public InetSocketAddress receive(ByteBuffer buffer) throws IOException {
+            return transport.receive(buffer);
+        }
+
+        @Override
+        public void close() throws IOException {
+            transport.close();
+        }
+    }
+
+    /**
+     * The processes of a run and the messages each of them delivered
+     */
+    private static class Run {
+        final Process[] processes;
+        final InetSocketAddress[] peers;
+        final List<Set<Long>> delivered = new ArrayList<>();
+        final List<Long> duplicates = new ArrayList<>();
+        final UniformReliableBroadcast[] urbs;
+
+        Run(int firstPort, int n) {
+            peers = new InetSocketAddress[n];
+            for (int i = 0; i < n; ++i) {
+                peers[i] = new InetSocketAddress(InetAddress.getLoopbackAddress(), firstPort + i);
+            }
+            processes = new Process[n];
+            for (int i = 0; i < n; ++i) {
+                processes[i] = new Process(i + 1, peers[i]);
+                processes[i].setPeersAndOthers(peers);
+                delivered.add(ConcurrentHashMap.newKeySet());
+            }
+            urbs = new UniformReliableBroadcast[n];
+        }
+
+        void start(int pid, Transport transport) {
+            Set<Long> set = delivered.get(pid - 1);
+            urbs[pid - 1] = new UniformReliableBroadcast(processes[pid - 1], m -> {
+                if (!set.add(((long) m.getOrigin() << 32) | m.getSeq())) {
+                    synchronized (duplicates) {
+                        duplicates.add(((long) m.getOrigin() << 32) | m.getSeq());
+                    }
+                }
+            }, transport, true);
+        }
+
+        void broadcast(int pid, int count) {
+            for (int i = 0; i < count; ++i) {
+                urbs[pid - 1].broadcast(new Message(pid, pid, new byte[4]));
+            }
+        }
+
+        /**
+         * @return true if each of the processes delivered count messages before the timeout
+         */
+        boolean await(int count, long timeout, int... pids) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            for (int pid : pids) {
+                while (delivered.get(pid - 1).size() < count) {
+                    if (System.currentTimeMillis() > deadline) {
+                        return false;
+                    }
+                    Thread.sleep(10);
+                }
+            }
+            return true;
+        }
+
+        void close() throws IOException {
+            for (UniformReliableBroadcast urb : urbs) {
+                if (urb != null) {
+                    urb.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAgreementOverALossyReorderingNetwork() throws IOException, InterruptedException {
+        Run run = new Run(41001, 5);
+        try {
+            for (int pid = 1; pid <= 5; ++pid) {
+                run.start(pid, new FaultyTransport(new MemoryTransport(run.peers[pid - 1]), 0.1, 1, 4, 0.5, pid));
+            }
+            for (int pid = 1; pid <= 5; ++pid) {
+                run.broadcast(pid, 50);
+            }
+            run.await(250, 20_000, 1, 2, 3, 4, 5);
+        } finally {
+            run.close();
+        }
+
+        for (int pid = 1; pid <= 5; ++pid) {
+            assertEquals(run.delivered.get(0), run.delivered.get(pid - 1), "messages delivered by p" + pid);
+        }
+        assertEquals(250, run.delivered.get(0).size());
+        assertTrue(run.duplicates.isEmpty(), "delivered twice: " + run.duplicates);
+    }
+
+    @Test
+    public void testAPeerMissingThePayloadRequestsIt() throws IOException, InterruptedException {
+        Run run = new Run(41011, 3);
+        try {
+            // p3 never hears from p1, so it only learns of its messages from the ACKs of p2
+            run.start(1, new Partition(new MemoryTransport(run.peers[0]), run.peers[2]));
+            run.start(2, new MemoryTransport(run.peers[1]));
+            run.start(3, new MemoryTransport(run.peers[2]));
+            run.broadcast(1, 20);
+            run.await(20, 10_000, 1, 2, 3);
+        } finally {
+            run.close();
+        }
+
+        for (int pid = 1; pid <= 3; ++pid) {
+            assertEquals(20, run.delivered.get(pid - 1).size(), "messages delivered by p" + pid);
+        }
+        assertTrue(run.duplicates.isEmpty(), "delivered twice: " + run.duplicates);
+    }
+
+    @Test
+    public void testDeliveryWaitsForAMajorityOfAcks() throws IOException, InterruptedException {
+        Run run = new Run(41021, 3);
+        try {
+            // p1 reaches the others but never gets their ACKs, so only it has acked its messages
+            run.start(1, new MemoryTransport(run.peers[0]));
+            run.start(2, new Partition(new MemoryTransport(run.peers[1]), run.peers[0]));
+            run.start(3, new Partition(new MemoryTransport(run.peers[2]), run.peers[0]));
+            run.broadcast(1, 20);
+            assertTrue(run.await(20, 10_000, 2, 3), "p2 and p3 delivered the messages acked by both");
+            Thread.sleep(200);
+        } finally {
+            run.close();
+        }
+
+        assertEquals(0, run.delivered.get(0).size(), "messages delivered by p1 with its ack only");
+        assertTrue(run.duplicates.isEmpty(), "delivered twice: " + run.duplicates);
+    }
+}
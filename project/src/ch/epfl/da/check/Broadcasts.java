@@ -0,0 +1,149 @@
+package ch.epfl.da.check;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The dependencies of the messages broadcast by one process, in the order they were
+ * broadcast. The dependencies of message s are, for each process the broadcaster depends
+ * on (itself and the processes that affect it), the number of messages of that process it
+ * delivered before broadcasting s. Since deliveries are FIFO, a process may deliver s
+ * once it delivered at least as many messages of each of these processes.
+ *
+ * The reader of the log of the broadcaster produces the dependencies and the readers
+ * of all the logs consume them, each in increasing order of s. The dependencies are
+ * kept until every reader consumed them, so the memory used is bounded by how far the
+ * broadcaster is ahead of the slowest reader, not by the size of the logs.
+ */
+final class Broadcasts {
+
+    /**
+     * Result of {@link #await(int, int, int[], BooleanSupplier)}
+     */
+    enum Status {AVAILABLE, NEVER_BROADCAST, UNKNOWN, DEADLOCK}
+
+    private static final long WAIT_MS = 100;
+
+    private final int[] dependencies;
+    private final int[] consumed;
+    private int[] values;
+    private int first;
+    private int produced;
+    private int waiters;
+    private boolean finished;
+    private boolean complete;
+
+    /**
+     * @param dependencies the processes the broadcaster depends on, including itself
+     * @param readers      the number of readers consuming the dependencies
+     */
+    Broadcasts(int[] dependencies, int readers) {
+        this.dependencies = dependencies.clone();
+        this.consumed = new int[readers];
+        this.values = new int[64 * Math.max(1, dependencies.length)];
+        this.first = 1;
+        this.produced = 0;
+    }
+
+    /**
+     * @return the processes the broadcaster depends on, in the order of the dependencies
+     */
+    int[] dependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Add the dependencies of the next message broadcast
+     *
+     * @param delivered the number of messages of each process delivered by the broadcaster,
+     *                  indexed by process ID
+     */
+    synchronized void produce(int[] delivered) {
+        int width = dependencies.length;
+        if ((produced + 1 - first) * width >= values.length) {
+            reclaim();
+        }
+        int at = (produced + 1 - first) * width;
+        for (int i = 0; i < width; ++i) {
+            values[at + i] = delivered[dependencies[i]];
+        }
+        ++produced;
+        if (waiters > 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Drop the dependencies consumed by every reader, growing the buffer if that is not enough
+     */
+    private void reclaim() {
+        int width = dependencies.length;
+        int min = Integer.MAX_VALUE;
+        for (int c : consumed) {
+            min = Math.min(min, c);
+        }
+        int drop = Math.min(min, produced) - first + 1;
+        if (drop > 0) {
+            System.arraycopy(values, drop * width, values, 0, (produced - first + 1 - drop) * width);
+            first += drop;
+        }
+        if ((produced + 1 - first) * width >= values.length / 2) {
+            values = Arrays.copyOf(values, 2 * values.length);
+        }
+    }
+
+    /**
+     * Declare that the broadcaster will not broadcast anymore
+     *
+     * @param complete false if its log was not read until the end
+     */
+    synchronized void finish(boolean complete) {
+        this.finished = true;
+        this.complete = complete;
+        notifyAll();
+    }
+
+    /**
+     * Declare that a reader will not consume anymore
+     *
+     * @param reader the index of the reader
+     */
+    synchronized void release(int reader) {
+        consumed[reader] = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Wait until the dependencies of a message are produced
+     *
+     * @param reader     the index of the reader
+     * @param seq        the sequence number of the message, greater than the one of the
+     *                   previous call by this reader
+     * @param out        the array in which the dependencies are copied
+     * @param deadlocked true if every reader is waiting and none makes progress
+     * @return {@link Status#AVAILABLE} if the dependencies were copied, {@link Status#NEVER_BROADCAST}
+     * if the log of the broadcaster ends before the message, {@link Status#UNKNOWN} if it was
+     * not read until the end, and {@link Status#DEADLOCK} if the readers wait for each other
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    synchronized Status await(int reader, int seq, int[] out, BooleanSupplier deadlocked)
+            throws InterruptedException {
+        while (produced < seq) {
+            if (finished) {
+                return complete ? Status.NEVER_BROADCAST : Status.UNKNOWN;
+            }
+            ++waiters;
+            try {
+                wait(WAIT_MS);
+            } finally {
+                --waiters;
+            }
+            if (produced < seq && !finished && deadlocked.getAsBoolean()) {
+                return Status.DEADLOCK;
+            }
+        }
+        int width = dependencies.length;
+        System.arraycopy(values, (seq - first) * width, out, 0, width);
+        consumed[reader] = seq;
+        return Status.AVAILABLE;
+    }
+}
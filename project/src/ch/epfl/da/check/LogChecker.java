@@ -0,0 +1,299 @@
+package ch.epfl.da.check;
+
+import ch.epfl.da.Process;
+import ch.epfl.da.Threads;
+import ch.epfl.da.io.LogReader;
+import ch.epfl.da.io.Parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Checks the logs of a run in a single pass over each of them, replacing check_fifo.py
+ * and check_lcb.py:
+ * java ch.epfl.da.check.LogChecker membership [directory] [--crashed=i,j,...] [--partial]
+ *
+ * The logs da_proc_N.out (or da_proc_N.bin, see {@link LogReader}) of the directory
+ * (default: the current one) are read in parallel, one thread per log. It verifies
+ * FIFO order of the broadcasts and of the deliveries of each sender, that no message
+ * is delivered before it is broadcast, localized causal order following the affectedBy
+ * lines of the membership file, and uniform agreement: every process that did not crash
+ * delivered as many messages of each sender as any other process. Agreement only holds
+ * if the processes were stopped once every message was delivered, --partial skips it
+ * for a run that was stopped before.
+ *
+ * Thanks to FIFO order, the messages a process delivered from a sender are summed up
+ * by their number, so the memory used does not grow with the size of the logs (see
+ * {@link Broadcasts}).
+ */
+public final class LogChecker {
+
+    private static final int MAX_REPORTED = 20;
+
+    private final Process[] processes;
+    private final Path[] logs;
+    private final Set<Integer> crashed;
+    private final Broadcasts[] broadcasts;
+    private final int[][] delivered;
+    private final boolean[] complete;
+    private final List<String> violations;
+    private final AtomicInteger running;
+    private final AtomicInteger blocked;
+    private final AtomicLong progress;
+
+    /**
+     * @param processes the processes of the membership file
+     * @param logs      the log of each process, process i + 1 at index i
+     * @param crashed   the IDs of the processes that crashed during the run
+     */
+    LogChecker(Process[] processes, Path[] logs, Set<Integer> crashed) {
+        this.processes = processes;
+        this.logs = logs;
+        this.crashed = crashed;
+        int n = processes.length;
+        this.broadcasts = new Broadcasts[n];
+        for (int i = 0; i < n; ++i) {
+            broadcasts[i] = new Broadcasts(dependencies(processes[i]), n);
+        }
+        this.delivered = new int[n][];
+        this.complete = new boolean[n];
+        this.violations = Collections.synchronizedList(new ArrayList<>());
+        this.running = new AtomicInteger(n);
+        this.blocked = new AtomicInteger();
+        this.progress = new AtomicLong();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: java ch.epfl.da.check.LogChecker membership [directory] [--crashed=i,j,...] [--partial]");
+            System.exit(2);
+        }
+        Path directory = Paths.get(".");
+        Set<Integer> crashed = new HashSet<>();
+        boolean agreement = true;
+        for (int i = 1; i < args.length; ++i) {
+            if (args[i].startsWith("--crashed=")) {
+                for (String pid : args[i].substring("--crashed=".length()).split(",")) {
+                    crashed.add(Integer.parseInt(pid.trim()));
+                }
+            } else if (args[i].equals("--partial")) {
+                agreement = false;
+            } else {
+                directory = Paths.get(args[i]);
+            }
+        }
+
+        Process[] processes = Parser.parseProcesses(1, args[0]);
+        Path[] logs = new Path[processes.length];
+        for (int i = 0; i < processes.length; ++i) {
+            logs[i] = directory.resolve("da_proc_" + (i + 1) + ".out");
+            Path binary = directory.resolve("da_proc_" + (i + 1) + ".bin");
+            if (!Files.exists(logs[i]) && Files.exists(binary)) {
+                logs[i] = binary;
+            }
+        }
+
+        List<String> violations = new LogChecker(processes, logs, crashed).check(agreement);
+        for (int i = 0; i < Math.min(MAX_REPORTED, violations.size()); ++i) {
+            System.out.println(violations.get(i));
+        }
+        if (violations.size() > MAX_REPORTED) {
+            System.out.println("... and " + (violations.size() - MAX_REPORTED) + " more");
+        }
+        if (!violations.isEmpty()) {
+            System.exit(1);
+        }
+        System.out.println(agreement ? "FIFO, URB agreement and LCB properties fulfilled."
+                : "FIFO and LCB properties fulfilled.");
+    }
+
+    /**
+     * @param process a process
+     * @return the sorted IDs of the process and of the processes that affect it
+     */
+    private static int[] dependencies(Process process) {
+        Set<Integer> dependencies = new TreeSet<>();
+        dependencies.add(process.getPID());
+        if (process.getAffectedBy() != null) {
+            for (int pid : process.getAffectedBy()) {
+                dependencies.add(pid);
+            }
+        }
+        return dependencies.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Read every log and check the properties
+     *
+     * @param agreement false to skip uniform agreement
+     * @return the violations found, empty if the logs are correct
+     * @throws InterruptedException if the thread is interrupted while waiting for the readers
+     */
+    List<String> check(boolean agreement) throws InterruptedException {
+        Thread[] readers = new Thread[processes.length];
+        for (int i = 0; i < readers.length; ++i) {
+            int pid = i + 1;
+            readers[i] = Threads.newThread(() -> read(pid));
+            readers[i].start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (agreement) {
+            checkAgreement();
+        }
+        return new ArrayList<>(violations);
+    }
+
+    /**
+     * Check the log of a process, stopping at its first violation
+     *
+     * @param pid the ID of the process
+     */
+    private void read(int pid) {
+        int[] count = new int[processes.length + 1];
+        boolean read = false;
+        Broadcasts own = broadcasts[pid - 1];
+        // a process delivers its own messages after broadcasting them, it never waits for them
+        own.release(pid - 1);
+        try {
+            if (!crashed.contains(pid) || Files.exists(logs[pid - 1])) {
+                try (LogReader reader = LogReader.open(logs[pid - 1])) {
+                    read = scan(pid, reader, count);
+                }
+            }
+        } catch (IOException e) {
+            violations.add("p" + pid + ": " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            own.finish(read);
+            for (Broadcasts other : broadcasts) {
+                other.release(pid - 1);
+            }
+            delivered[pid - 1] = count;
+            complete[pid - 1] = read;
+            running.decrementAndGet();
+            progress.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param pid    the ID of the process
+     * @param reader the reader of its log
+     * @param count  the number of messages of each process it delivered, updated while reading
+     * @return true if the log was read until the end, false if a violation was found
+     */
+    private boolean scan(int pid, LogReader reader, int[] count) throws IOException, InterruptedException {
+        int n = processes.length;
+        Broadcasts own = broadcasts[pid - 1];
+        int[] vector = new int[n + 1];
+        long[] seen = {-1};
+        // every reader waits for another one: the logs contradict each other
+        BooleanSupplier deadlocked = () -> {
+            long now = progress.get();
+            boolean stuck = blocked.get() >= running.get() && now == seen[0];
+            seen[0] = now;
+            return stuck;
+        };
+        int broadcast = 0;
+
+        while (reader.next()) {
+            int seq = reader.seq();
+            if (reader.isBroadcast()) {
+                if (seq != broadcast + 1) {
+                    return violation(pid, reader, "broadcast " + seq + " after " + broadcast);
+                }
+                broadcast = seq;
+                own.produce(count);
+                progress.incrementAndGet();
+                continue;
+            }
+
+            int sender = reader.sender();
+            if (sender < 1 || sender > n) {
+                return violation(pid, reader, "delivered a message of unknown process " + sender);
+            }
+            if (seq != count[sender] + 1) {
+                return violation(pid, reader, "delivered " + sender + " " + seq + " after "
+                        + sender + " " + count[sender] + " (FIFO)");
+            }
+            if (sender == pid) {
+                if (seq > broadcast) {
+                    return violation(pid, reader, "delivered its message " + seq + " before broadcasting it");
+                }
+                count[sender] = seq;
+                continue;
+            }
+
+            Broadcasts.Status status;
+            blocked.incrementAndGet();
+            try {
+                status = broadcasts[sender - 1].await(pid - 1, seq, vector, deadlocked);
+            } finally {
+                blocked.decrementAndGet();
+            }
+            switch (status) {
+                case NEVER_BROADCAST:
+                    return violation(pid, reader, "delivered " + sender + " " + seq + " which was never broadcast");
+                case DEADLOCK:
+                    return violation(pid, reader, "delivered " + sender + " " + seq
+                            + " which was broadcast after events that follow this delivery");
+                case AVAILABLE:
+                    int[] dependencies = broadcasts[sender - 1].dependencies();
+                    for (int i = 0; i < dependencies.length; ++i) {
+                        if (count[dependencies[i]] < vector[i]) {
+                            return violation(pid, reader, "delivered " + sender + " " + seq + " before "
+                                    + dependencies[i] + " " + vector[i] + " (LCB)");
+                        }
+                    }
+                    break;
+                default:
+                    // the log of the sender is incomplete, the dependencies are unknown
+                    break;
+            }
+            count[sender] = seq;
+        }
+        return true;
+    }
+
+    private boolean violation(int pid, LogReader reader, String message) {
+        violations.add("p" + pid + " line " + reader.line() + ": " + message);
+        return false;
+    }
+
+    /**
+     * Check that every process that did not crash and whose log was read until the end
+     * delivered as many messages of each sender as the process that delivered the most
+     */
+    private void checkAgreement() {
+        int n = processes.length;
+        for (int sender = 1; sender <= n; ++sender) {
+            int most = 0;
+            int by = 0;
+            for (int k = 0; k < n; ++k) {
+                if (delivered[k][sender] > most) {
+                    most = delivered[k][sender];
+                    by = k + 1;
+                }
+            }
+            for (int k = 0; k < n; ++k) {
+                if (complete[k] && !crashed.contains(k + 1) && delivered[k][sender] < most) {
+                    violations.add("p" + (k + 1) + " delivered " + delivered[k][sender] + " messages of "
+                            + sender + " but p" + by + " delivered " + most + " (URB agreement)");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ch.epfl.da.check;
+
+import ch.epfl.da.Process;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LogCheckerTest {
+
+    private static List<String> check(Set<Integer> crashed, String... logs) throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("da_logs");
+        Process[] processes = new Process[logs.length];
+        Path[] files = new Path[logs.length];
+        for (int i = 0; i < logs.length; ++i) {
+            processes[i] = new Process(i + 1, new InetSocketAddress("127.0.0.1", 11001 + i));
+            files[i] = directory.resolve("da_proc_" + (i + 1) + ".out");
+            Files.write(files[i], logs[i].getBytes(StandardCharsets.US_ASCII));
+        }
+        // process 1 is affected by process 2
+        processes[0].setAffectedBy(new int[]{2});
+        return new LogChecker(processes, files, crashed).check(true);
+    }
+
+    private static void assertViolation(String expected, List<String> violations) {
+        assertEquals(1, violations.size(), violations.toString());
+        assertTrue(violations.get(0).contains(expected), violations.get(0));
+    }
+
+    @Test
+    public void testCorrectLogsHaveNoViolation() throws IOException, InterruptedException {
+        List<String> violations = check(Collections.emptySet(),
+                "d 2 1\nb 1\nd 1 1\nd 3 1\n",
+                "b 1\nd 2 1\nd 1 1\nd 3 1\n",
+                "b 1\nd 3 1\nd 2 1\nd 1 1\n");
+        assertEquals(Collections.emptyList(), violations);
+    }
+
+    @Test
+    public void testDeliveringOutOfOrderViolatesFIFO() throws IOException, InterruptedException {
+        List<String> violations = check(Collections.emptySet(),
+                "b 1\nb 2\nd 1 1\nd 1 2\n",
+                "d 1 2\nd 1 1\n");
+        assertViolation("p2 line 1: delivered 1 2 after 1 0 (FIFO)", violations);
+    }
+
+    @Test
+    public void testDeliveringBeforeADependencyViolatesLCB() throws IOException, InterruptedException {
+        // process 1 delivered 2 1 before broadcasting 1 1, process 3 delivers them the other way
+        List<String> violations = check(Collections.emptySet(),
+                "d 2 1\nb 1\nd 1 1\n",
+                "b 1\nd 2 1\nd 1 1\n",
+                "d 1 1\nd 2 1\n");
+        assertViolation("p3 line 1: delivered 1 1 before 2 1 (LCB)", violations);
+    }
+
+    @Test
+    public void testDeliveringANeverBroadcastMessageIsAViolation() throws IOException, InterruptedException {
+        List<String> violations = check(Collections.emptySet(),
+                "b 1\nd 1 1\nd 2 1\n",
+                "d 1 1\n");
+        assertViolation("p1 line 3: delivered 2 1 which was never broadcast", violations);
+    }
+
+    @Test
+    public void testMissingDeliveryViolatesAgreementUnlessCrashed() throws IOException, InterruptedException {
+        String[] logs = {"b 1\nd 1 1\n", "d 1 1\n", ""};
+        assertViolation("p3 delivered 0 messages of 1 but p1 delivered 1 (URB agreement)",
+                check(Collections.emptySet(), logs));
+        assertEquals(Collections.emptyList(), check(Collections.singleton(3), logs));
+    }
+}
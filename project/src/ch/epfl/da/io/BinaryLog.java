@@ -0,0 +1,220 @@
+package ch.epfl.da.io;
+
+import ch.epfl.da.Threads;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes the records in binary, in a file mapped in memory by segments of 64 MiB that
+ * are added as the log grows. Appending a record only reserves its place with an
+ * atomic increment and stores two longs in the mapping: no thread formats nor writes
+ * anything, the operating system writes the pages back, even if the process is killed.
+ *
+ * The file starts with a header of {@link #RECORD_SIZE} bytes holding {@link #MAGIC},
+ * followed by the records: the record and its timestamp, both big-endian longs. A record
+ * that was reserved but not stored is zero. On close the file is truncated after the
+ * last record. {@link LogExporter} converts a binary log to the text format.
+ *
+ * If the {@link SyncPolicy} is durable, a thread forces the pages of the new records to
+ * the disk, and an existing file is kept: it is truncated after its last stored record
+ * and the new records are appended.
+ */
+final class BinaryLog implements LogSink {
+
+    /**
+     * "DA_LOG01" in ASCII
+     */
+    static final long MAGIC = 0x44415F4C4F473031L;
+    static final int RECORD_SIZE = 16;
+    static final int SEGMENT_BITS = 26;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final long CLOSED = Long.MIN_VALUE;
+    private static final long SYNC_TICK = 1;
+
+    private final FileChannel channel;
+    private final SyncPolicy sync;
+    private final AtomicLong position;
+    private final Thread syncer;
+    private volatile MappedByteBuffer[] segments;
+    private volatile long synced;
+    private long previous;
+
+    /**
+     * @param file the file, truncated if it exists
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    BinaryLog(Path file) throws IOException {
+        this(file, SyncPolicy.NONE);
+    }
+
+    /**
+     * @param file the file, truncated if it exists unless the policy is durable
+     * @param sync when to force the records to the disk
+     * @throws IOException if the file cannot be opened, recovered or mapped
+     */
+    BinaryLog(Path file, SyncPolicy sync) throws IOException {
+        long end = 0;
+        if (sync.isDurable()) {
+            this.channel = FileChannel.open(file, CREATE, READ, WRITE);
+            end = recover(channel);
+            channel.truncate(end);
+        } else {
+            this.channel = FileChannel.open(file, CREATE, READ, WRITE, TRUNCATE_EXISTING);
+        }
+        this.sync = sync;
+        this.segments = new MappedByteBuffer[0];
+        // the header of a new file is forced with the first records
+        this.previous = end;
+        if (end == 0) {
+            segment(0).putLong(0, MAGIC);
+            end = RECORD_SIZE;
+        }
+        this.position = new AtomicLong(end);
+        this.synced = end;
+        if (sync.isDurable()) {
+            syncer = Threads.newThread(this::syncLoop);
+            syncer.setDaemon(true);
+            syncer.start();
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * Find the end of the last stored record of a binary log
+     *
+     * @param channel the file
+     * @return the size of the file without its torn tail, 0 if it is not a binary log
+     * @throws IOException if the file cannot be read
+     */
+    static long recover(FileChannel channel) throws IOException {
+        long size = channel.size() - channel.size() % RECORD_SIZE;
+        ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+        if (size < RECORD_SIZE || channel.read(header, 0) < Long.BYTES || header.getLong(0) != MAGIC) {
+            return 0;
+        }
+        for (long end = size; end > RECORD_SIZE; end -= SEGMENT_SIZE) {
+            long start = Math.max(RECORD_SIZE, end - SEGMENT_SIZE);
+            MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            for (int at = block.limit() - RECORD_SIZE; at >= 0; at -= RECORD_SIZE) {
+                if (block.getLong(at) != 0) {
+                    return start + at + RECORD_SIZE;
+                }
+            }
+        }
+        return RECORD_SIZE;
+    }
+
+    @Override
+    public void append(long record, long timestamp) throws IOException {
+        long offset = position.getAndAdd(RECORD_SIZE);
+        if (offset < 0) {
+            return;
+        }
+        MappedByteBuffer segment = segment((int) (offset >>> SEGMENT_BITS));
+        int at = (int) (offset & (SEGMENT_SIZE - 1));
+        segment.putLong(at + Long.BYTES, timestamp);
+        segment.putLong(at, record);
+    }
+
+    /**
+     * @param index the index of a segment
+     * @return the segment, mapped if it was not yet
+     * @throws IOException if the segment cannot be mapped
+     */
+    private MappedByteBuffer segment(int index) throws IOException {
+        MappedByteBuffer[] mapped = segments;
+        if (index < mapped.length) {
+            return mapped[index];
+        }
+        synchronized (this) {
+            mapped = segments;
+            if (index >= mapped.length) {
+                mapped = Arrays.copyOf(mapped, index + 1);
+                for (int i = segments.length; i <= index; ++i) {
+                    mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * SEGMENT_SIZE, SEGMENT_SIZE);
+                }
+                segments = mapped;
+            }
+            return mapped[index];
+        }
+    }
+
+    /**
+     * Loop of the sync thread: force the new records to the disk when the policy says so
+     */
+    private void syncLoop() {
+        long lastSync = System.currentTimeMillis();
+        try {
+            while (true) {
+                Thread.sleep(SYNC_TICK);
+                long end = position.get();
+                if (end < 0) {
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                if (sync.isDue(end - synced, now - lastSync)) {
+                    force(end);
+                    lastSync = now;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Force the records up to end to the disk. The records logged since the sync
+     * before the last one are forced, so that a record reserved before the last sync
+     * but stored after it is forced too. Pages that were already written are skipped
+     * by the operating system.
+     *
+     * @param end the end of the records to force
+     * @throws IOException if the segments cannot be mapped
+     */
+    private synchronized void force(long end) throws IOException {
+        for (long start = previous; start < end; start = (start | (SEGMENT_SIZE - 1)) + 1) {
+            int at = (int) (start & (SEGMENT_SIZE - 1));
+            int length = (int) (Math.min(end, (start | (SEGMENT_SIZE - 1)) + 1) - start);
+            segment((int) (start >>> SEGMENT_BITS)).force(at, length);
+        }
+        previous = synced;
+        synced = end;
+    }
+
+    @Override
+    public void close() throws IOException {
+        long end = position.getAndSet(CLOSED);
+        if (end < 0) {
+            return;
+        }
+        if (syncer != null) {
+            try {
+                syncer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            force(end);
+        }
+        // the mappings stay valid until they are garbage collected, only truncate after
+        // the records that were reserved so that no store can fall outside of the file
+        channel.truncate(end);
+        if (sync.isDurable()) {
+            channel.force(true);
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,91 @@
+package ch.epfl.da.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Converts binary logs (see {@link BinaryLog}) to the text format of da_proc_N.out:
+ * java ch.epfl.da.io.LogExporter da_proc_1.bin da_proc_2.bin ... writes
+ * da_proc_1.out, da_proc_2.out, ... next to them.
+ */
+public final class LogExporter {
+
+    private static final int BATCH_SIZE = 1 << 16;
+
+    private LogExporter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: java ch.epfl.da.io.LogExporter <da_proc_N.bin>...");
+            System.exit(1);
+        }
+        for (String arg : args) {
+            Path binary = Paths.get(arg);
+            String name = binary.getFileName().toString();
+            String base = name.endsWith(".bin") ? name.substring(0, name.length() - 4) : name;
+            export(binary, binary.resolveSibling(base + ".out"));
+        }
+    }
+
+    /**
+     * Write the records of a binary log as text. Records that were reserved but
+     * not stored, and an incomplete last record, are skipped.
+     *
+     * @param binary the binary log
+     * @param text   the text file, truncated if it exists
+     * @return the number of records exported
+     * @throws IOException if a file cannot be read or written, or binary is not a binary log
+     */
+    static long export(Path binary, Path text) throws IOException {
+        long count = 0;
+        try (FileChannel in = FileChannel.open(binary, READ);
+             FileChannel out = FileChannel.open(text, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            long size = in.size() - in.size() % BinaryLog.RECORD_SIZE;
+            long segmentSize = 1L << BinaryLog.SEGMENT_BITS;
+            byte[] batch = new byte[BATCH_SIZE];
+            int length = 0;
+            for (long start = 0; start < size; start += segmentSize) {
+                MappedByteBuffer segment = in.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(segmentSize, size - start));
+                int at = 0;
+                if (start == 0) {
+                    if (segment.limit() < BinaryLog.RECORD_SIZE || segment.getLong(0) != BinaryLog.MAGIC) {
+                        throw new IOException(binary + " is not a binary log");
+                    }
+                    at = BinaryLog.RECORD_SIZE;
+                }
+                for (; at < segment.limit(); at += BinaryLog.RECORD_SIZE) {
+                    long record = segment.getLong(at);
+                    if (record == 0) {
+                        continue;
+                    }
+                    if (length > BATCH_SIZE - Records.MAX_LINE) {
+                        write(out, batch, length);
+                        length = 0;
+                    }
+                    length = Records.line(batch, length, record, segment.getLong(at + Long.BYTES));
+                    ++count;
+                }
+            }
+            write(out, batch, length);
+        }
+        return count;
+    }
+
+    private static void write(FileChannel out, byte[] batch, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(batch, 0, length);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
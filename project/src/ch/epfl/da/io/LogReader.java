@@ -0,0 +1,228 @@
+package ch.epfl.da.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reads the events of a log written by a {@link Logger}, one at a time, without
+ * loading the file: the text format of da_proc_N.out or, for a file ending with .bin,
+ * the binary format (see {@link BinaryLog}).
+ *
+ * <pre>
+ * try (LogReader reader = LogReader.open(file)) {
+ *     while (reader.next()) {
+ *         ... reader.isBroadcast(), reader.sender(), reader.seq() ...
+ *     }
+ * }
+ * </pre>
+ */
+public abstract class LogReader implements Closeable {
+
+    private static final int BATCH_SIZE = 1 << 16;
+
+    long record;
+    long line;
+
+    /**
+     * @param file a text or binary log
+     * @return a reader positioned before the first event of file
+     * @throws IOException if the file cannot be opened
+     */
+    public static LogReader open(Path file) throws IOException {
+        if (file.getFileName().toString().endsWith(".bin")) {
+            return new Binary(file);
+        }
+        return new Text(file);
+    }
+
+    /**
+     * Move to the next event
+     *
+     * @return false if there is no more event
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public abstract boolean next() throws IOException;
+
+    /**
+     * @return true if the current event is a broadcast, false if it is a delivery
+     */
+    public boolean isBroadcast() {
+        return record < 0;
+    }
+
+    /**
+     * @return the process whose message is delivered, for a delivery
+     */
+    public int sender() {
+        return (int) ((record >>> 32) & 0x7FFFFFFFL);
+    }
+
+    /**
+     * @return the sequence number of the message
+     */
+    public int seq() {
+        return (int) record;
+    }
+
+    /**
+     * @return the line (or the index of the record, from 1) of the current event
+     */
+    public long line() {
+        return line;
+    }
+
+    /**
+     * Reads da_proc_N.out: "b seq" and "d sender seq" lines, each optionally
+     * followed by a timestamp which is ignored.
+     */
+    private static final class Text extends LogReader {
+        private final Path file;
+        private final InputStream in;
+        private final byte[] buffer;
+        private int position;
+        private int limit;
+        private int terminator;
+
+        Text(Path file) throws IOException {
+            this.file = file;
+            this.in = Files.newInputStream(file);
+            this.buffer = new byte[BATCH_SIZE];
+        }
+
+        /**
+         * @return the next byte of the file, -1 at its end
+         */
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            int c = read();
+            if (c < 0) {
+                return false;
+            }
+            ++line;
+            if (c != 'b' && c != 'd') {
+                throw malformed();
+            }
+            long first = number();
+            if (c == 'b') {
+                record = Records.broadcast((int) first);
+            } else if (terminator == ' ') {
+                record = Records.deliver((int) first, (int) number());
+            } else {
+                throw malformed();
+            }
+            // skip the timestamp, if any
+            while (terminator != '\n' && terminator >= 0) {
+                terminator = read();
+            }
+            return true;
+        }
+
+        /**
+         * Read the next number of the line, after the spaces preceding it, and the
+         * character that follows it in {@link #terminator}
+         *
+         * @return the number
+         */
+        private long number() throws IOException {
+            int c = read();
+            while (c == ' ') {
+                c = read();
+            }
+            if (c < '0' || c > '9') {
+                throw malformed();
+            }
+            long value = 0;
+            while (c >= '0' && c <= '9') {
+                value = 10 * value + (c - '0');
+                c = read();
+            }
+            terminator = c;
+            return value;
+        }
+
+        private IOException malformed() {
+            return new IOException(file + ": line " + line + " is malformed");
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads da_proc_N.bin, skipping the records that were reserved but not stored
+     */
+    private static final class Binary extends LogReader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long index;
+
+        Binary(Path file) throws IOException {
+            this.channel = FileChannel.open(file, READ);
+            this.buffer = ByteBuffer.allocate(BATCH_SIZE);
+            buffer.flip();
+            if (!fill() || buffer.getLong() != BinaryLog.MAGIC) {
+                channel.close();
+                throw new IOException(file + " is not a binary log");
+            }
+            buffer.getLong();
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            do {
+                if (!fill()) {
+                    return false;
+                }
+                record = buffer.getLong();
+                buffer.getLong();
+                ++index;
+            } while (record == 0);
+            line = index;
+            return true;
+        }
+
+        /**
+         * @return false if the file does not contain another complete record
+         */
+        private boolean fill() throws IOException {
+            if (buffer.remaining() >= BinaryLog.RECORD_SIZE) {
+                return true;
+            }
+            buffer.compact();
+            while (buffer.position() < BinaryLog.RECORD_SIZE) {
+                if (channel.read(buffer) < 0) {
+                    buffer.flip();
+                    return false;
+                }
+            }
+            buffer.flip();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
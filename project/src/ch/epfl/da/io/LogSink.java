@@ -0,0 +1,26 @@
+package ch.epfl.da.io;
+
+import java.io.IOException;
+
+/**
+ * Where a {@link Logger} stores its records (see {@link Records})
+ */
+interface LogSink {
+
+    /**
+     * Store a record. May be called by several threads at the same time.
+     * Records appended once the sink is closed are dropped.
+     *
+     * @param record    the record
+     * @param timestamp the time of the record in microseconds, or {@link Records#NO_TIMESTAMP}
+     * @throws IOException if the record could not be stored
+     */
+    void append(long record, long timestamp) throws IOException;
+
+    /**
+     * Store the records appended so far and close the sink
+     *
+     * @throws IOException if the records could not be stored
+     */
+    void close() throws IOException;
+}
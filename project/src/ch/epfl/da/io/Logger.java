@@ -1,24 +1,56 @@
 package ch.epfl.da.io;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * Logger class to write in a file the messages broadcast and delivered
+ *
+ * With the system property da.log.format=text (default) the events are written
+ * in da_proc_N.out asynchronously (see {@link TextLog}). With da.log.format=binary
+ * they are stored as fixed-width records in da_proc_N.bin, a file mapped in memory
+ * (see {@link BinaryLog}), which {@link LogExporter} converts to da_proc_N.out.
+ *
+ * With da.log.sync the logs are forced to the disk so that they survive a crash, and
+ * recovered when the process restarts (see {@link SyncPolicy}).
+ *
+ * If the system property da.log.timestamps is true, each line ends with the
+ * time at which the event was logged, in microseconds since the epoch
+ * (see perf_report.py).
  */
 public final class Logger {
 
-    private final BufferedWriter writer;
+    private static final boolean TIMESTAMPS = Boolean.getBoolean("da.log.timestamps");
+    private final LogSink sink;
 
     /**
-     * Creates a logger which will write in a file da_proc_"n".out
+     * Creates a logger which will write in a file da_proc_"n".out, or da_proc_"n".bin
      *
      * @param n the id of the process
      * @throws IOException if there is a problem when creating the logger
      */
     public Logger(int n) throws IOException {
-        this.writer = new BufferedWriter(new FileWriter("da_proc_" + n + ".out"));
+        this(open(System.getProperty("da.log.format", "text"), "da_proc_" + n));
+    }
+
+    /**
+     * Creates a logger storing its records in a sink
+     *
+     * @param sink the sink
+     */
+    Logger(LogSink sink) {
+        this.sink = sink;
+    }
+
+    private static LogSink open(String format, String name) throws IOException {
+        switch (format) {
+            case "text":
+                return new TextLog(Paths.get(name + ".out"), SyncPolicy.fromProperties());
+            case "binary":
+                return new BinaryLog(Paths.get(name + ".bin"), SyncPolicy.fromProperties());
+            default:
+                throw new IllegalArgumentException("Unknown log format " + format);
+        }
     }
 
     /**
@@ -28,7 +60,7 @@ public final class Logger {
      * @throws IOException if it is not possible to write in the file
      */
     public void broadcast(int seqNbr) throws IOException {
-        writer.append("b " + seqNbr + " \n");
+        sink.append(Records.broadcast(seqNbr), timestamp());
     }
 
     /**
@@ -39,16 +71,20 @@ public final class Logger {
      * @throws IOException if it is not possible to write in the file
      */
     public void deliver(int sender, int seqNbr) throws IOException {
-        writer.append("d " + sender + " " + seqNbr + " \n");
+        sink.append(Records.deliver(sender, seqNbr), timestamp());
+    }
+
+    private static long timestamp() {
+        return TIMESTAMPS ? Records.timestamp() : Records.NO_TIMESTAMP;
     }
 
     /**
-     * Close the logger
+     * Write the events logged so far and close the logger
      *
-     * @throws IOException if it is not possible to close the writer
+     * @throws IOException if it is not possible to write in or close the file
      */
     public void close() throws IOException {
-        writer.close();
+        sink.close();
     }
 
 }
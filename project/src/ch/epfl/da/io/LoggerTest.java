@@ -0,0 +1,142 @@
+package ch.epfl.da.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LoggerTest {
+
+    private static final int THREADS = 4;
+    private static final int RECORDS = 100_000;
+
+    @Test
+    public void testTextLogWritesEveryRecordInOrder() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("da_proc_", ".out");
+        logConcurrently(new Logger(new TextLog(file)));
+        checkLines(file);
+    }
+
+    @Test
+    public void testClosingWaitsForTheRecordsBeingAppended() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("da_proc_", ".out");
+        TextLog log = new TextLog(file);
+        long first = log.claim();
+        long second = log.claim();
+        // the second record is published while the first one is still being appended
+        log.publish(second, Records.deliver(2, 1), Records.NO_TIMESTAMP);
+        Thread closer = new Thread(() -> {
+            try {
+                log.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        closer.start();
+        Thread.sleep(50);
+        log.publish(first, Records.broadcast(1), Records.NO_TIMESTAMP);
+        closer.join();
+
+        assertEquals(Arrays.asList("b 1 ", "d 2 1 "), Files.readAllLines(file));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testExportedBinaryLogHasEveryRecordInOrder() throws IOException, InterruptedException {
+        Path binary = Files.createTempFile("da_proc_", ".bin");
+        Path text = Files.createTempFile("da_proc_", ".out");
+        logConcurrently(new Logger(new BinaryLog(binary)));
+
+        assertEquals(BinaryLog.RECORD_SIZE * (1 + (THREADS + 1) * RECORDS), Files.size(binary));
+        assertEquals((THREADS + 1) * RECORDS, LogExporter.export(binary, text));
+        Files.delete(binary);
+        checkLines(text);
+    }
+
+    @Test
+    public void testDurableTextLogCutsItsTornTail() throws IOException {
+        Path file = Files.createTempFile("da_proc_", ".out");
+        Files.write(file, "b 1 \nd 2 3 \nd 2".getBytes(StandardCharsets.US_ASCII));
+
+        Logger logger = new Logger(new TextLog(file, new SyncPolicy(SyncPolicy.Kind.BATCH, 0, 0)));
+        logger.deliver(2, 4);
+        logger.close();
+
+        assertEquals(Arrays.asList("b 1 ", "d 2 3 ", "d 2 4 "), Files.readAllLines(file));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testDurableBinaryLogCutsItsTornTail() throws IOException {
+        Path binary = Files.createTempFile("da_proc_", ".bin");
+        Path text = Files.createTempFile("da_proc_", ".out");
+        SyncPolicy sync = new SyncPolicy(SyncPolicy.Kind.INTERVAL, 1, 0);
+        Logger logger = new Logger(new BinaryLog(binary, sync));
+        logger.broadcast(1);
+        logger.deliver(2, 3);
+        logger.close();
+        // a crash leaves the rest of the mapped segment and a partially written record
+        try (FileChannel channel = FileChannel.open(binary, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1}), 1 << 20);
+        }
+
+        logger = new Logger(new BinaryLog(binary, sync));
+        logger.deliver(2, 4);
+        logger.close();
+
+        assertEquals(4 * BinaryLog.RECORD_SIZE, Files.size(binary));
+        assertEquals(3, LogExporter.export(binary, text));
+        assertEquals(Arrays.asList("b 1 ", "d 2 3 ", "d 2 4 "), Files.readAllLines(text));
+        Files.delete(binary);
+        Files.delete(text);
+    }
+
+    private static void logConcurrently(Logger logger) throws IOException, InterruptedException {
+        Thread[] senders = new Thread[THREADS];
+        for (int t = 0; t < THREADS; ++t) {
+            int sender = t + 1;
+            senders[t] = new Thread(() -> {
+                try {
+                    for (int seq = 1; seq <= RECORDS; ++seq) {
+                        logger.deliver(sender, seq);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            senders[t].start();
+        }
+        for (int seq = 1; seq <= RECORDS; ++seq) {
+            logger.broadcast(seq);
+        }
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        logger.close();
+        logger.deliver(1, RECORDS + 1);
+    }
+
+    private static void checkLines(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        Files.delete(file);
+        assertEquals((THREADS + 1) * RECORDS, lines.size());
+
+        int[] next = new int[THREADS + 1];
+        for (String line : lines) {
+            String[] fields = line.split(" ");
+            int sender = fields[0].equals("b") ? 0 : Integer.parseInt(fields[1]);
+            assertEquals(++next[sender], Integer.parseInt(fields[fields.length - 1]), line);
+        }
+        assertEquals("b 1 ", lines.stream().filter(l -> l.startsWith("b")).findFirst().orElse(""));
+    }
+}
@@ -0,0 +1,107 @@
+package ch.epfl.da.io;
+
+import java.time.Instant;
+
+/**
+ * The records of the logs. A record is a long holding the type of the event in its
+ * highest bit (set for a broadcast), the sender in the next 31 bits and the sequence
+ * number in the lowest 32 bits. Its text format is "b seq" or "d sender seq", followed
+ * by the timestamp if any, a space and a new line.
+ */
+final class Records {
+
+    /**
+     * The maximum length of a line
+     */
+    static final int MAX_LINE = 64;
+
+    /**
+     * The timestamp of a record logged without timestamp
+     */
+    static final long NO_TIMESTAMP = 0;
+
+    private static final long BROADCAST = 1L << 63;
+
+    private Records() {
+    }
+
+    /**
+     * @param seqNbr the sequence number of the message
+     * @return the record of the broadcast of a message
+     */
+    static long broadcast(int seqNbr) {
+        return BROADCAST | (seqNbr & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param sender the id of the process whose message is delivered
+     * @param seqNbr the sequence number of the message
+     * @return the record of the delivery of a message
+     */
+    static long deliver(int sender, int seqNbr) {
+        return ((long) sender << 32) | (seqNbr & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the current time in microseconds since the epoch
+     */
+    static long timestamp() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000L + now.getNano() / 1_000;
+    }
+
+    /**
+     * Write the line of a record in an array
+     *
+     * @param line      the array
+     * @param offset    the index at which the line starts, with at least {@link #MAX_LINE} bytes after it
+     * @param record    the record
+     * @param timestamp the time of the record in microseconds, or {@link #NO_TIMESTAMP}
+     * @return the index after the end of the line
+     */
+    static int line(byte[] line, int offset, long record, long timestamp) {
+        int length;
+        if (record < 0) {
+            line[offset] = 'b';
+            length = offset + 1;
+        } else {
+            line[offset] = 'd';
+            line[offset + 1] = ' ';
+            length = number(line, offset + 2, (record >>> 32) & 0x7FFFFFFFL);
+        }
+        line[length] = ' ';
+        length = number(line, length + 1, record & 0xFFFFFFFFL);
+        if (timestamp != NO_TIMESTAMP) {
+            line[length] = ' ';
+            length = number(line, length + 1, timestamp);
+        }
+        line[length] = ' ';
+        line[length + 1] = '\n';
+        return length + 2;
+    }
+
+    /**
+     * Write the decimal digits of a number
+     *
+     * @param line  the array
+     * @param from  the index of the first digit
+     * @param value the number, not negative
+     * @return the index after the last digit
+     */
+    private static int number(byte[] line, int from, long value) {
+        int to = from + digits(value);
+        for (int i = to - 1; i >= from; --i) {
+            line[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return to;
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        for (long bound = 10; digits < 19 && value >= bound; bound *= 10) {
+            ++digits;
+        }
+        return digits;
+    }
+}
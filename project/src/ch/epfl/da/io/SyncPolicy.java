@@ -0,0 +1,89 @@
+package ch.epfl.da.io;
+
+/**
+ * When a log forces its records to the disk, so that they survive a crash of the
+ * process or of the machine. It is read from the system properties:
+ * da.log.sync=none (default), the records reach the disk when the operating system
+ * writes them back, batch, after each batch written by the log, interval, at most
+ * da.log.syncInterval ms after being logged (default 100), or size, once
+ * da.log.syncSize bytes were logged since the last sync (default 1048576).
+ *
+ * With any policy but none, an existing log is recovered instead of truncated:
+ * its torn tail, if any, is cut and the new records are appended after it.
+ */
+final class SyncPolicy {
+
+    enum Kind {NONE, BATCH, INTERVAL, SIZE}
+
+    static final SyncPolicy NONE = new SyncPolicy(Kind.NONE, 0, 0);
+
+    private final Kind kind;
+    private final long interval;
+    private final long size;
+
+    /**
+     * @param kind     when to sync
+     * @param interval the maximum time in ms between two syncs, for {@link Kind#INTERVAL}
+     * @param size     the number of bytes logged between two syncs, for {@link Kind#SIZE}
+     */
+    SyncPolicy(Kind kind, long interval, long size) {
+        this.kind = kind;
+        this.interval = interval;
+        this.size = size;
+    }
+
+    /**
+     * @return the policy described by da.log.sync, da.log.syncInterval and da.log.syncSize
+     */
+    static SyncPolicy fromProperties() {
+        Kind kind = Kind.valueOf(System.getProperty("da.log.sync", "none").toUpperCase());
+        return new SyncPolicy(kind, Long.getLong("da.log.syncInterval", 100),
+                Long.getLong("da.log.syncSize", 1 << 20));
+    }
+
+    /**
+     * @return true if records are forced to the disk, in which case an existing log is recovered
+     */
+    boolean isDurable() {
+        return kind != Kind.NONE;
+    }
+
+    /**
+     * @param unsynced the number of bytes logged since the last sync
+     * @param elapsed  the time in ms since the last sync
+     * @return true if the log must be forced to the disk
+     */
+    boolean isDue(long unsynced, long elapsed) {
+        if (unsynced == 0) {
+            return false;
+        }
+        switch (kind) {
+            case BATCH:
+                return true;
+            case INTERVAL:
+                return elapsed >= interval;
+            case SIZE:
+                return unsynced >= size;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param unsynced the number of bytes logged since the last sync
+     * @param elapsed  the time in ms since the last sync
+     * @return the time in ms until the log must be forced to the disk even if nothing
+     * more is logged, {@link Long#MAX_VALUE} if only logging more can make it due
+     */
+    long untilDue(long unsynced, long elapsed) {
+        if (unsynced == 0 || kind != Kind.INTERVAL) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, interval - elapsed);
+    }
+
+    @Override
+    public String toString() {
+        return kind.name().toLowerCase();
+    }
+}
@@ -0,0 +1,271 @@
+package ch.epfl.da.io;
+
+import ch.epfl.da.Threads;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes the records as text lines.
+ *
+ * The callers only store a record in a preallocated ring buffer of da.log.bufferSize
+ * records (default 65536). A writer thread formats the records and writes them in
+ * batches of 64 KiB through a {@link FileChannel}, so that neither formatting nor
+ * disk accesses happen on the threads of the broadcast. A caller only waits when the
+ * ring buffer is full, parking for a time that doubles up to 1 ms until the writer has
+ * freed its slot. {@link #close()} writes all the records appended before it was called,
+ * and the ones being appended meanwhile.
+ *
+ * The writer forces the file to the disk following a {@link SyncPolicy}. If the policy
+ * is durable, an existing file is kept: a last line that was not completely written
+ * before a crash is cut and the new lines are appended.
+ */
+final class TextLog implements LogSink {
+
+    private static final int BUFFER_SIZE = Integer.getInteger("da.log.bufferSize", 1 << 16);
+    private static final int BATCH_SIZE = 1 << 16;
+    private static final long MIN_BACKOFF_NANOS = 1_000;
+    private static final long MAX_BACKOFF_NANOS = 1_000_000;
+
+    private final FileChannel channel;
+    private final SyncPolicy sync;
+    private final long[] records;
+    private final long[] timestamps;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong tail;
+    private final Thread writer;
+    private volatile long head;
+    private volatile boolean closed;
+    private volatile boolean sleeping;
+    private volatile IOException failure;
+
+    /**
+     * @param file the file, truncated if it exists
+     * @throws IOException if the file cannot be opened
+     */
+    TextLog(Path file) throws IOException {
+        this(file, SyncPolicy.NONE);
+    }
+
+    /**
+     * @param file the file, truncated if it exists unless the policy is durable
+     * @param sync when to force the file to the disk
+     * @throws IOException if the file cannot be opened or recovered
+     */
+    TextLog(Path file, SyncPolicy sync) throws IOException {
+        if (sync.isDurable()) {
+            this.channel = FileChannel.open(file, CREATE, READ, WRITE);
+            long end = recover(channel);
+            channel.truncate(end);
+            channel.position(end);
+        } else {
+            this.channel = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING);
+        }
+        this.sync = sync;
+        int capacity = Integer.highestOneBit(Math.max(2, BUFFER_SIZE) - 1) << 1;
+        this.records = new long[capacity];
+        this.timestamps = new long[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; ++i) {
+            published.set(i, -1);
+        }
+        this.mask = capacity - 1;
+        this.tail = new AtomicLong();
+        this.head = 0;
+        this.writer = Threads.newThread(this::write);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void append(long record, long timestamp) throws IOException {
+        long slot = claim();
+        if (slot >= 0) {
+            publish(slot, record, timestamp);
+        }
+    }
+
+    /**
+     * Claim the next slot of the ring buffer, waiting until the writer has freed it
+     *
+     * @return the slot, -1 if the log is closed
+     * @throws IOException if the writer failed
+     */
+    long claim() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (closed) {
+            return -1;
+        }
+        long slot = tail.getAndIncrement();
+        if (slot - head > mask) {
+            LockSupport.unpark(writer);
+            long backoff = MIN_BACKOFF_NANOS;
+            while (slot - head > mask) {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (closed && !writer.isAlive()) {
+                    return -1;
+                }
+                LockSupport.parkNanos(this, backoff);
+                backoff = Math.min(2 * backoff, MAX_BACKOFF_NANOS);
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Store a record in a slot and make it visible to the writer, waking it up if it
+     * sleeps. Publishing is a volatile write so that it is ordered before reading
+     * sleeping, and the writer sets sleeping before checking the slot: either the
+     * writer sees the record or the caller sees that it must wake it up.
+     *
+     * @param slot      a slot returned by {@link #claim()}
+     * @param record    the record
+     * @param timestamp its timestamp
+     */
+    void publish(long slot, long record, long timestamp) {
+        int i = (int) (slot & mask);
+        records[i] = record;
+        timestamps[i] = timestamp;
+        published.set(i, slot);
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Find the end of the last complete line of a file
+     *
+     * @param channel the file
+     * @return the size of the file without its torn tail
+     * @throws IOException if the file cannot be read
+     */
+    static long recover(FileChannel channel) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(BATCH_SIZE);
+        long end = channel.size();
+        while (end > 0) {
+            long start = Math.max(0, end - BATCH_SIZE);
+            block.clear().limit((int) (end - start));
+            while (block.hasRemaining()) {
+                if (channel.read(block, start + block.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = block.position() - 1; i >= 0; --i) {
+                if (block.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    /**
+     * Loop of the writer thread: format the published records in batches until
+     * the log is closed and every record has been written. Once closed, the records
+     * claimed before the writer saw it are written too, waiting for the callers that
+     * have not published theirs yet, so that a record published after an earlier one
+     * still in progress is not lost.
+     */
+    private void write() {
+        byte[] batch = new byte[BATCH_SIZE];
+        long unsynced = 0;
+        long lastSync = System.currentTimeMillis();
+        try {
+            while (true) {
+                boolean closing = closed;
+                long end = closing ? tail.get() : 0;
+                long next = head;
+                int length = 0;
+                while (true) {
+                    if (published.get((int) (next & mask)) != next) {
+                        if (next >= end) {
+                            break;
+                        }
+                        // claimed before the close, the caller is about to publish it
+                        Thread.yield();
+                        continue;
+                    }
+                    if (length > BATCH_SIZE - Records.MAX_LINE) {
+                        flush(batch, length);
+                        unsynced += length;
+                        length = 0;
+                    }
+                    int i = (int) (next & mask);
+                    length = Records.line(batch, length, records[i], timestamps[i]);
+                    head = ++next;
+                }
+                flush(batch, length);
+                unsynced += length;
+
+                long now = System.currentTimeMillis();
+                if (sync.isDue(unsynced, now - lastSync) || (closing && sync.isDurable() && unsynced > 0)) {
+                    channel.force(false);
+                    unsynced = 0;
+                    lastSync = now;
+                }
+                if (closing) {
+                    return;
+                }
+                sleep(sync.untilDue(unsynced, now - lastSync));
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Park the writer until a record is published, the log is closed or a sync is due
+     *
+     * @param timeout the time in ms until a sync is due, {@link Long#MAX_VALUE} if none
+     */
+    private void sleep(long timeout) {
+        sleeping = true;
+        if (published.get((int) (head & mask)) != head && !closed) {
+            if (timeout == Long.MAX_VALUE) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(timeout));
+            }
+        }
+        sleeping = false;
+    }
+
+    private void flush(byte[] batch, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(batch, 0, length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
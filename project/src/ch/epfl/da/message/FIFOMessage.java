@@ -1,14 +1,16 @@
 package ch.epfl.da.message;
 
-import java.math.BigInteger;
-
+/**
+ * A message delivered by FIFO broadcast. Its sequence ID is its position among
+ * the messages of its origin, starting at 1.
+ */
 public class FIFOMessage implements Comparable<FIFOMessage> {
 	private final Message message;
 	private final int sequenceID;
 
 	public FIFOMessage(Message message) {
 		this.message = message;
-		sequenceID = new BigInteger(message.getData()).intValue();
+		sequenceID = message.getSeq() + 1;
 	}
 
 	public Message message() {
@@ -1,12 +1,21 @@
 package ch.epfl.da.message;
 
-import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
+import java.io.ByteArrayOutputStream;
 import java.util.Arrays;
 
+/**
+ * A message of localized causal broadcast. Its data is a sparse vector clock: the
+ * entries of the processes which affect the origin, and of the origin itself, sorted
+ * by process ID. The entries of the other processes are always 0 and are not sent.
+ *
+ * The vector is encoded as its number of entries followed by, for each entry, the
+ * difference between its process ID and the previous one and its value, all as
+ * unsigned varints (7 bits per byte, the high bit set on every byte but the last).
+ */
 public class LCBMessage {
     private final int origin;
-    private final int[] data;
+    private final int[] pids;
+    private final int[] values;
 
     public LCBMessage(int origin, byte[] data) {
         if (data == null) {
@@ -14,23 +23,99 @@ public class LCBMessage {
         }
 
         this.origin = origin;
-        IntBuffer intBuf =
-                ByteBuffer.wrap(data)
-                        .asIntBuffer();
-        this.data = new int[data.length / 4];
-        intBuf.get(this.data);
+        int[] position = {0};
+        int size = readVarint(data, position);
+        this.pids = new int[size];
+        this.values = new int[size];
+        int pid = 0;
+        for (int k = 0; k < size; ++k) {
+            pid += readVarint(data, position);
+            pids[k] = pid;
+            values[k] = readVarint(data, position);
+        }
     }
 
+    /**
+     * @param pids   the process IDs of the entries, in increasing order
+     * @param values the values of the entries
+     * @return the encoded sparse vector clock, the data of a message
+     */
+    public static byte[] encode(int[] pids, int[] values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 + 2 * pids.length);
+        writeVarint(out, pids.length);
+        int previous = 0;
+        for (int k = 0; k < pids.length; ++k) {
+            writeVarint(out, pids[k] - previous);
+            writeVarint(out, values[k]);
+            previous = pids[k];
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
 
     public int getOrigin() {
         return origin;
     }
 
-    public int[] getData() {
-        return data;
+    /**
+     * @return the number of entries of the vector clock
+     */
+    public int size() {
+        return pids.length;
+    }
+
+    /**
+     * @param k the index of an entry, between 0 and size() - 1
+     * @return the process ID of the entry
+     */
+    public int pid(int k) {
+        return pids[k];
+    }
+
+    /**
+     * @param k the index of an entry, between 0 and size() - 1
+     * @return the value of the entry
+     */
+    public int value(int k) {
+        return values[k];
+    }
+
+    /**
+     * @param pid a process ID
+     * @return the index of the entry of pid, or a negative number if the vector has none
+     */
+    public int indexOf(int pid) {
+        return Arrays.binarySearch(pids, pid);
+    }
+
+    /**
+     * @param pid a process ID
+     * @return the value of the entry of pid in the vector clock
+     */
+    public int get(int pid) {
+        int k = indexOf(pid);
+        return (k < 0) ? 0 : values[k];
     }
 
     public int getValue(){
-        return data[origin-1] + 1;
+        return get(origin) + 1;
     }
 }
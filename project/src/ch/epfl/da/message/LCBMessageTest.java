@@ -0,0 +1,34 @@
+package ch.epfl.da.message;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LCBMessageTest {
+    @Test
+    public void testEncodeDecode(){
+        int[] pids = {3, 4, 200, 70000};
+        int[] values = {0, 127, 128, Integer.MAX_VALUE};
+
+        byte[] data = LCBMessage.encode(pids, values);
+        LCBMessage m = new LCBMessage(4, data);
+
+        assertEquals(4, m.size());
+        for (int k = 0; k < pids.length; k++) {
+            assertEquals(pids[k], m.pid(k));
+            assertEquals(values[k], m.value(k));
+        }
+        assertEquals(128, m.getValue());
+        assertEquals(0, m.get(5));
+        assertTrue(m.indexOf(5) < 0);
+    }
+
+    @Test
+    public void testOverheadScalesWithDependencies(){
+        // two dependencies out of hundreds of processes, with values below 128
+        byte[] data = LCBMessage.encode(new int[]{17, 300}, new int[]{5, 100});
+
+        assertEquals(1 + 2 * (1 + 1) + 1, data.length);
+    }
+}
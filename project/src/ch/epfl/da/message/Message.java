@@ -1,32 +1,90 @@
 package ch.epfl.da.message;
 
-import java.util.Arrays;
-
 /**
  * This abstract class represents the message that are broadcast.
+ * A message is identified by its origin and the sequence number its origin
+ * gave it (see {@link #id()}), its data is neither hashed nor compared.
  */
 public class Message {
+	private static final byte[] NO_DATA = new byte[0];
+
+	private final MessageKind kind;
 	private final int origin;
+	private final int seq;
 	private final int senderPID;
 	private final byte[] data;
 	private final int hash;
 
 	public Message(int origin, int senderPID, byte[] data) {
-		if (data == null) {
+		this(origin, 0, senderPID, data);
+	}
+
+	/**
+	 * @param origin    the ID of the process which broadcast the message
+	 * @param seq       the sequence number of the message among those broadcast by origin
+	 * @param senderPID the ID of the process which sent this copy of the message
+	 * @param data      the content of the message
+	 */
+	public Message(int origin, int seq, int senderPID, byte[] data) {
+		this(MessageKind.DATA, origin, seq, senderPID, data);
+	}
+
+	/**
+	 * @param kind      the kind of the message
+	 * @param origin    the ID of the process which broadcast the message
+	 * @param seq       the sequence number of the message among those broadcast by origin
+	 * @param senderPID the ID of the process which sent this copy of the message
+	 * @param data      the content of the message, empty for an ACK or a REQUEST
+	 */
+	public Message(MessageKind kind, int origin, int seq, int senderPID, byte[] data) {
+		if (kind == null || data == null) {
 			throw new IllegalArgumentException("The arguments of Message cannot be null");
 		}
 
+		this.kind = kind;
 		this.origin = origin;
+		this.seq = seq;
 		this.senderPID = senderPID;
 		this.data = data;
-		this.hash = 31 * Arrays.hashCode(data) + origin;
+		this.hash = 31 * seq + origin;
+
+	}
 
+	/**
+	 * @return the kind of the message
+	 */
+	public MessageKind getKind() {
+		return kind;
 	}
 
 	public int getOrigin() {
 		return origin;
 	}
 
+	/**
+	 * @return the sequence number of the message among those broadcast by its origin
+	 */
+	public int getSeq() {
+		return seq;
+	}
+
+	/**
+	 * @return the compact ID of the message: its origin in the high 32 bits and
+	 * its sequence number in the low 32 bits
+	 */
+	public long id() {
+		return id(origin, seq);
+	}
+
+	/**
+	 * @param origin the ID of the process which broadcast a message
+	 * @param seq    the sequence number of the message among those broadcast by origin
+	 * @return the compact ID of the message
+	 */
+	public static long id(int origin, int seq) {
+		return ((long) origin << 32) | (seq & 0xFFFFFFFFL);
+	}
+
 	public int getSenderPID() {
 		return senderPID;
 	}
@@ -36,13 +94,22 @@ public class Message {
 	}
 
 	public Message resend(int senderPID) {
-		return new Message(origin, senderPID, data.clone());
+		return new Message(kind, origin, seq, senderPID, data);
+	}
+
+	/**
+	 * @param kind      ACK or REQUEST
+	 * @param senderPID the ID of the process which sends it
+	 * @return a message of the given kind identifying this message, without its data
+	 */
+	public Message control(MessageKind kind, int senderPID) {
+		return new Message(kind, origin, seq, senderPID, NO_DATA);
 	}
 
 	@Override
 	public String toString() {
 		StringBuilder s = new StringBuilder();
-		s.append("Message from sender: ").append(senderPID).append(" origin: (").append(origin).append(")");
+		s.append(kind).append(" from sender: ").append(senderPID).append(" origin: (").append(origin).append(", ").append(seq).append(")");
 		s.append(" with data: ");
 		for (byte b : data) {
 			s.append(b).append(" ");
@@ -57,7 +124,7 @@ public class Message {
 			return true;
 		if (o instanceof Message) {
 			Message that = (Message) o;
-			return origin == that.origin && Arrays.equals(data, that.data);
+			return origin == that.origin && seq == that.seq;
 		}
 
 		return false;
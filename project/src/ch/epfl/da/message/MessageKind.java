@@ -0,0 +1,9 @@
+package ch.epfl.da.message;
+
+/**
+ * The kinds of messages exchanged by the uniform reliable broadcast.
+ * ACK and REQUEST only identify a message (origin and sequence number) and carry no data.
+ */
+public enum MessageKind {
+	DATA, ACK, REQUEST
+}
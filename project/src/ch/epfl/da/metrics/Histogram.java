@@ -0,0 +1,117 @@
+package ch.epfl.da.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts values in buckets of logarithmic width, like HdrHistogram: the values below
+ * 2^(SUB_BITS + 1) have their own bucket, and each power of two above is split in
+ * 2^SUB_BITS buckets, so a value is known within 1/32 of itself whatever its magnitude.
+ * The whole range of non-negative longs takes a fixed array of 1888 counters.
+ *
+ * Recording is an atomic increment, without lock nor allocation, from any thread.
+ * The percentiles are computed from a {@link #snapshot()}, which is not atomic: a value
+ * recorded meanwhile may or may not be counted.
+ */
+public final class Histogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+
+    Histogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * @param value the value to count, negative values are counted as 0
+     */
+    public void record(long value) {
+        counts.incrementAndGet(index(Math.max(0, value)));
+    }
+
+    /**
+     * @param value a non-negative value
+     * @return the index of its bucket
+     */
+    static int index(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * @param index the index of a bucket
+     * @return the largest value counted in the bucket
+     */
+    static long highest(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (index - shift * SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * @return the counts recorded so far
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; ++i) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy);
+    }
+
+    /**
+     * The counts of a histogram at some point in time
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+        }
+
+        /**
+         * @return the number of values recorded
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * @param quantile between 0 and 1
+         * @return the smallest value such that quantile of the values are lower or
+         * equal, within the precision of the buckets, 0 if no value was recorded
+         */
+        public long percentile(double quantile) {
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; ++i) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highest(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @return the largest value recorded, within the precision of the buckets
+         */
+        public long max() {
+            return percentile(1);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package ch.epfl.da.metrics;
+
+import ch.epfl.da.Threads;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The metrics of one process: counters, gauges and histograms identified by their
+ * name, e.g. pl.retransmitted. The layers look their metrics up once, when they are
+ * created, and then only update them on the hot path:
+ * <ul>
+ * <li>a counter is a {@link LongAdder}, whose cells are striped over the threads that
+ * increment it so that they do not contend on one cache line;</li>
+ * <li>a gauge is a function sampled when the metrics are written, e.g. the size of a
+ * buffer, so it costs nothing until then;</li>
+ * <li>a {@link Histogram} counts values, e.g. latencies, in logarithmic buckets.</li>
+ * </ul>
+ *
+ * Every process has its own metrics (see {@link #of(int)}), so that the processes
+ * running in the same JVM do not mix theirs. {@link #report(int)} appends the metrics
+ * of a process to da_proc_N.metrics every da.metrics.interval ms (default 1000, 0 to
+ * never write them), and once more when the JVM exits.
+ */
+public final class Metrics {
+
+    private static final long INTERVAL = Long.getLong("da.metrics.interval", 1000);
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+    private static final Map<Integer, Metrics> PROCESSES = new ConcurrentHashMap<>();
+
+    private final Map<String, LongAdder> counters;
+    private final Map<String, LongSupplier> gauges;
+    private final Map<String, Histogram> histograms;
+
+    Metrics() {
+        this.counters = new ConcurrentSkipListMap<>();
+        this.gauges = new ConcurrentSkipListMap<>();
+        this.histograms = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * @param pid the ID of a process
+     * @return the metrics of the process
+     */
+    public static Metrics of(int pid) {
+        return PROCESSES.computeIfAbsent(pid, p -> new Metrics());
+    }
+
+    /**
+     * @param name the name of the counter
+     * @return the counter, created at 0 if it does not exist
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * @param name the name of the histogram
+     * @return the histogram, created empty if it does not exist
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Register a gauge, replacing the previous one of the same name
+     *
+     * @param name  the name of the gauge
+     * @param value the function giving the value of the gauge, called from the thread
+     *              writing the metrics
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Write the current value of every metric, one per line: "name value" for the
+     * counters and gauges, "name count=... p50=... p90=... p99=... p999=... max=..."
+     * for the histograms
+     *
+     * @param out the destination
+     * @throws IOException if out cannot be written
+     */
+    public void write(Appendable out) throws IOException {
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            out.append(counter.getKey()).append(' ').append(Long.toString(counter.getValue().sum())).append('\n');
+        }
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            out.append(gauge.getKey()).append(' ').append(Long.toString(gauge.getValue().getAsLong())).append('\n');
+        }
+        for (Map.Entry<String, Histogram> histogram : histograms.entrySet()) {
+            Histogram.Snapshot snapshot = histogram.getValue().snapshot();
+            out.append(histogram.getKey()).append(" count=").append(Long.toString(snapshot.count()));
+            for (int i = 0; i < PERCENTILES.length; ++i) {
+                out.append(' ').append(PERCENTILE_NAMES[i]).append('=')
+                        .append(Long.toString(snapshot.percentile(PERCENTILES[i])));
+            }
+            out.append(" max=").append(Long.toString(snapshot.max())).append('\n');
+        }
+    }
+
+    /**
+     * Start appending the metrics of a process to da_proc_"pid".metrics, following
+     * da.metrics.interval
+     *
+     * @param pid the ID of the process
+     * @throws IOException if the file cannot be created
+     */
+    public static void report(int pid) throws IOException {
+        if (INTERVAL > 0) {
+            of(pid).report(Paths.get("da_proc_" + pid + ".metrics"), INTERVAL);
+        }
+    }
+
+    /**
+     * Start appending the metrics to a file, each dump starting with a line
+     * "# time" (in ms since the epoch)
+     *
+     * @param file     the file, truncated if it exists
+     * @param interval the time between two dumps in ms
+     * @throws IOException if the file cannot be created
+     */
+    void report(Path file, long interval) throws IOException {
+        Writer out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII);
+        Runnable dump = () -> {
+            synchronized (out) {
+                try {
+                    out.write("# " + System.currentTimeMillis() + "\n");
+                    write(out);
+                    out.flush();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+
+        Thread reporter = Threads.newThread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(interval);
+                    dump.run();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        reporter.setDaemon(true);
+        reporter.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(dump));
+    }
+}
@@ -0,0 +1,55 @@
+package ch.epfl.da.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsTest {
+
+    @Test
+    public void testBucketsCoverEveryValueInOrder() {
+        assertEquals(0, Histogram.index(0));
+        assertEquals(63, Histogram.index(63));
+        assertEquals(Histogram.BUCKETS - 1, Histogram.index(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, Histogram.highest(Histogram.BUCKETS - 1));
+        for (int i = 1; i < Histogram.BUCKETS; ++i) {
+            long lowest = Histogram.highest(i - 1) + 1;
+            assertEquals(i, Histogram.index(lowest));
+            assertEquals(i, Histogram.index(Histogram.highest(i)));
+        }
+    }
+
+    @Test
+    public void testPercentilesAreWithinThePrecisionOfTheBuckets() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100_000; ++value) {
+            histogram.record(value);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100_000, snapshot.count());
+        assertWithin(50_000, snapshot.percentile(0.5));
+        assertWithin(99_000, snapshot.percentile(0.99));
+        assertWithin(100_000, snapshot.max());
+        assertEquals(1, snapshot.percentile(0));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 32, expected + " ~ " + actual);
+    }
+
+    @Test
+    public void testWriteListsEveryMetric() throws IOException {
+        Metrics metrics = new Metrics();
+        metrics.counter("pl.sent").add(3);
+        metrics.gauge("pl.pending", () -> 7);
+        metrics.histogram("pl.rtt").record(5);
+
+        StringBuilder out = new StringBuilder();
+        metrics.write(out);
+        assertEquals("pl.sent 3\npl.pending 7\npl.rtt count=1 p50=5 p90=5 p99=5 p999=5 max=5\n", out.toString());
+    }
+}
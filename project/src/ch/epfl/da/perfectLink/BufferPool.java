@@ -0,0 +1,47 @@
+package ch.epfl.da.perfectLink;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A pool of direct buffers of the same size, so that datagrams can be received
+ * without allocating. The buffers are allocated upfront and kept in a bounded queue
+ * backed by an array, so acquiring and releasing them allocates nothing. A buffer is
+ * allocated when the pool is empty, and dropped when it is released to a full pool.
+ */
+class BufferPool {
+
+    private final ArrayBlockingQueue<ByteBuffer> buffers;
+    private final int size;
+
+    /**
+     * @param count the number of buffers allocated upfront, and kept at most
+     * @param size  the capacity of each buffer
+     */
+    BufferPool(int count, int size) {
+        this.buffers = new ArrayBlockingQueue<>(count);
+        this.size = size;
+        for (int i = 0; i < count; i++) {
+            buffers.add(ByteBuffer.allocateDirect(size));
+        }
+    }
+
+    /**
+     * @return a cleared buffer, which must be given back with {@link #release(ByteBuffer)}
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(size);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * @param buffer a buffer obtained from {@link #acquire()} that is not used anymore
+     */
+    void release(ByteBuffer buffer) {
+        buffers.offer(buffer);
+    }
+}
@@ -0,0 +1,76 @@
+package ch.epfl.da.perfectLink;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+
+/**
+ * Transport on top of a {@link DatagramChannel}. The datagrams are built in direct
+ * buffers (see {@link #allocate(int)}), which the channel sends without copying them,
+ * and received in direct buffers taken from a {@link BufferPool}, from which the frames
+ * are decoded.
+ */
+public class ChannelTransport implements Transport {
+
+    private static final int POOL_SIZE = 8;
+    private final DatagramChannel channel;
+    private final BufferPool pool;
+
+    /**
+     * @param addr    the local address to bind
+     * @param maxSize the maximum size of a datagram
+     * @throws SocketException if the address cannot be bound
+     */
+    public ChannelTransport(InetSocketAddress addr, int maxSize) throws SocketException {
+        try {
+            this.channel = DatagramChannel.open();
+            this.channel.bind(addr);
+        } catch (SocketException e) {
+            throw e;
+        } catch (IOException e) {
+            SocketException se = new SocketException("Cannot open a channel on " + addr);
+            se.initCause(e);
+            throw se;
+        }
+        this.pool = new BufferPool(POOL_SIZE, maxSize);
+    }
+
+    @Override
+    public void send(ByteBuffer datagram, SocketAddress target) throws IOException {
+        channel.send(datagram, target);
+    }
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    @Override
+    public InetSocketAddress receive(List<PerfectLinkMessage> plms) throws IOException {
+        ByteBuffer buffer = pool.acquire();
+        try {
+            InetSocketAddress source = (InetSocketAddress) channel.receive(buffer);
+            buffer.flip();
+            PerfectLinkMessage.deserializeBatch(buffer, plms);
+            return source;
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    @Override
+    public InetSocketAddress receive(ByteBuffer buffer) throws IOException {
+        InetSocketAddress source = (InetSocketAddress) channel.receive(buffer);
+        buffer.flip();
+        return source;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
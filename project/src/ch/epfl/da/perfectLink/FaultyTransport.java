@@ -0,0 +1,205 @@
+package ch.epfl.da.perfectLink;
+
+import ch.epfl.da.Threads;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorates a transport to emulate a lossy network, like netem does, without
+ * needing root access. The datagrams sent are dropped, delayed and reordered
+ * following system properties read at startup:
+ * da.net.loss, the percentage of datagrams dropped (default 0),
+ * da.net.delay and da.net.jitter, the delay of a datagram in ms is da.net.delay plus
+ * a random value up to da.net.jitter (default 0 and 0),
+ * da.net.reorder, the percentage of datagrams sent without delay, i.e. before the
+ * datagrams sent earlier (default 0),
+ * da.net.seed, the seed of the random choices, to which the port of the process is
+ * added so that processes sharing a seed do not lose the same datagrams (default 0).
+ *
+ * The fate of a datagram only depends on the seed, its destination and the number of
+ * datagrams sent to that destination before it, not on the threads that send them, so
+ * a run with the same seed drops and delays the same datagrams of each destination.
+ *
+ * Delayed datagrams are copied and sent by a dedicated thread once their delay has elapsed.
+ * Received datagrams are left untouched.
+ */
+public class FaultyTransport implements Transport {
+
+    private final Transport transport;
+    private final double loss;
+    private final long delay;
+    private final long jitter;
+    private final double reorder;
+    private final long seed;
+    private final Map<SocketAddress, AtomicLong> sent;
+    private final DelayQueue<Packet> delayed;
+    private final Thread sender;
+
+    /**
+     * @param transport the transport to decorate
+     * @param loss      the probability that a datagram is dropped
+     * @param delay     the minimum delay of a datagram in ms
+     * @param jitter    the maximum random delay added to a datagram in ms
+     * @param reorder   the probability that a datagram is not delayed
+     * @param seed      the seed of the random choices
+     */
+    public FaultyTransport(Transport transport, double loss, long delay, long jitter, double reorder, long seed) {
+        this.transport = transport;
+        this.loss = loss;
+        this.delay = delay;
+        this.jitter = jitter;
+        this.reorder = reorder;
+        this.seed = seed;
+        this.sent = new ConcurrentHashMap<>();
+        this.delayed = new DelayQueue<>();
+        if (delay > 0 || jitter > 0) {
+            sender = Threads.newThread(this::sendDelayed);
+            sender.setDaemon(true);
+            sender.start();
+        } else {
+            sender = null;
+        }
+    }
+
+    /**
+     * @return true if any of da.net.loss, da.net.delay, da.net.jitter or da.net.reorder is set
+     */
+    static boolean isConfigured() {
+        return System.getProperty("da.net.loss") != null || System.getProperty("da.net.delay") != null
+                || System.getProperty("da.net.jitter") != null || System.getProperty("da.net.reorder") != null;
+    }
+
+    /**
+     * Decorate a transport with the faults described by the da.net.* properties
+     *
+     * @param transport the transport to decorate
+     * @param addr      the local address of the transport
+     * @return the decorated transport
+     */
+    static FaultyTransport fromProperties(Transport transport, InetSocketAddress addr) {
+        return new FaultyTransport(transport,
+                Double.parseDouble(System.getProperty("da.net.loss", "0")) / 100,
+                Long.getLong("da.net.delay", 0),
+                Long.getLong("da.net.jitter", 0),
+                Double.parseDouble(System.getProperty("da.net.reorder", "0")) / 100,
+                Long.getLong("da.net.seed", 0) + addr.getPort());
+    }
+
+    @Override
+    public void send(ByteBuffer datagram, SocketAddress target) throws IOException {
+        long index = sent.computeIfAbsent(target, t -> new AtomicLong()).getAndIncrement();
+        long bits = mix(mix(seed + target.hashCode()) + index);
+        if (loss > 0 && uniform(bits, 1) < loss) {
+            return;
+        }
+        long ms = 0;
+        if (reorder == 0 || uniform(bits, 2) >= reorder) {
+            ms = delay + ((jitter > 0) ? (long) (uniform(bits, 3) * jitter) : 0);
+        }
+        if (ms == 0) {
+            transport.send(datagram, target);
+            return;
+        }
+        // the caller reuses datagram once send returns
+        byte[] copy = new byte[datagram.remaining()];
+        datagram.get(copy);
+        delayed.add(new Packet(copy, target, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ms)));
+    }
+
+    /**
+     * @param datagram the random bits of a datagram
+     * @param choice   the index of the choice made for the datagram
+     * @return a number uniformly distributed in [0, 1)
+     */
+    private static double uniform(long datagram, int choice) {
+        return (mix(datagram + choice * 0x9E3779B97F4A7C15L) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * The finalizer of SplitMix64, which spreads every bit of its input over its output
+     *
+     * @param z a value
+     * @return the mixed value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        return transport.allocate(capacity);
+    }
+
+    @Override
+    public InetSocketAddress receive(List<PerfectLinkMessage> plms) throws IOException {
+        return transport.receive(plms);
+    }
+
+    @Override
+    public InetSocketAddress receive(ByteBuffer buffer) throws IOException {
+        return transport.receive(buffer);
+    }
+
+    /**
+     * Close the decorated transport, dropping the datagrams still delayed
+     *
+     * @throws IOException if the transport cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (sender != null) {
+            sender.interrupt();
+        }
+        transport.close();
+    }
+
+    private void sendDelayed() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Packet packet = delayed.take();
+                transport.send(ByteBuffer.wrap(packet.data), packet.target);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A datagram waiting for its delay to elapse
+     */
+    private static final class Packet implements Delayed {
+        final byte[] data;
+        final SocketAddress target;
+        private final long due;
+
+        Packet(byte[] data, SocketAddress target, long due) {
+            this.data = data;
+            this.target = target;
+            this.due = due;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(due - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(due, ((Packet) o).due);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package ch.epfl.da.perfectLink;
+
+import ch.epfl.da.Process;
+import ch.epfl.da.message.Message;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FaultyTransportTest {
+
+    private static final InetSocketAddress TARGET = new InetSocketAddress(InetAddress.getLoopbackAddress(), 1);
+
+    /**
+     * Records the first byte of the datagrams sent
+     */
+    private static class Recorder implements Transport {
+        final List<Byte> sent = new ArrayList<>();
+
+        @Override
+        public synchronized void send(ByteBuffer datagram, SocketAddress target) {
+            sent.add(datagram.get());
+        }
+
+        @Override
+        public InetSocketAddress receive(List<PerfectLinkMessage> plms) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public InetSocketAddress receive(ByteBuffer buffer) {
+            throw new UnsupportedOperationException();
+        }
+
+        synchronized List<Byte> sent() {
+            return new ArrayList<>(sent);
+        }
+    }
+
+    private static List<Byte> sendAll(double loss, long seed) throws IOException {
+        Recorder recorder = new Recorder();
+        Transport transport = new FaultyTransport(recorder, loss, 0, 0, 0, seed);
+        for (int i = 0; i < 10_000; ++i) {
+            transport.send(ByteBuffer.wrap(new byte[]{(byte) i}), TARGET);
+        }
+        return recorder.sent();
+    }
+
+    @Test
+    public void testLossIsDeterministic() throws IOException {
+        List<Byte> first = sendAll(0.3, 42);
+
+        assertEquals(first, sendAll(0.3, 42));
+        assertTrue(Math.abs(first.size() - 7_000) < 300, first.size() + " datagrams sent");
+        assertEquals(10_000, sendAll(0, 42).size());
+    }
+
+    @Test
+    public void testLossDoesNotDependOnTheSendingThreads() throws IOException, InterruptedException {
+        Recorder recorder = new Recorder();
+        Transport transport = new FaultyTransport(recorder, 0.3, 0, 0, 0, 42);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2_500; ++i) {
+                    try {
+                        transport.send(ByteBuffer.wrap(new byte[]{(byte) i}), TARGET);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // the same datagrams of TARGET are dropped, whichever thread sent them
+        assertEquals(sendAll(0.3, 42).size(), recorder.sent().size());
+    }
+
+    @Test
+    public void testUndelayedDatagramsOvertakeDelayedOnes() throws IOException, InterruptedException {
+        Recorder recorder = new Recorder();
+        Transport transport = new FaultyTransport(recorder, 0, 50, 0, 0.5, 7);
+        for (int i = 0; i < 100; ++i) {
+            transport.send(ByteBuffer.wrap(new byte[]{(byte) i}), TARGET);
+        }
+        int immediate = recorder.sent().size();
+        assertTrue(immediate > 0 && immediate < 100, immediate + " datagrams sent without delay");
+
+        Thread.sleep(500);
+        List<Byte> sent = recorder.sent();
+        assertEquals(100, sent.size());
+        assertEquals(100, sent.stream().distinct().count());
+    }
+
+    @Test
+    public void testPerfectLinkDeliversEverythingOverALossyNetwork() throws IOException, InterruptedException {
+        InetSocketAddress[] peers = {
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 40001),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 40002)
+        };
+        Process[] processes = new Process[peers.length];
+        for (int i = 0; i < peers.length; ++i) {
+            processes[i] = new Process(i + 1, peers[i]);
+            processes[i].setPeersAndOthers(peers);
+        }
+
+        Set<Integer> delivered = ConcurrentHashMap.newKeySet();
+        List<Integer> duplicates = new ArrayList<>();
+        PerfectLink sender = new PerfectLink(new FaultyTransport(new MemoryTransport(peers[0]), 0.1, 0, 0, 0, 1),
+                m -> { }, processes[0]);
+        PerfectLink receiver = new PerfectLink(new FaultyTransport(new MemoryTransport(peers[1]), 0.1, 0, 0, 0, 2),
+                m -> {
+                    if (!delivered.add(m.getSeq())) {
+                        synchronized (duplicates) {
+                            duplicates.add(m.getSeq());
+                        }
+                    }
+                }, processes[1]);
+        sender.start();
+        receiver.start();
+
+        try {
+            for (int i = 0; i < 1000; ++i) {
+                sender.send(new Message(1, i, 1, new byte[4]), peers[1]);
+            }
+            for (int i = 0; i < 200 && delivered.size() < 1000; ++i) {
+                Thread.sleep(50);
+            }
+        } finally {
+            sender.close();
+            receiver.close();
+        }
+
+        assertEquals(1000, delivered.size());
+        assertTrue(duplicates.isEmpty(), "delivered twice: " + duplicates);
+    }
+}
@@ -0,0 +1,91 @@
+package ch.epfl.da.perfectLink;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A network inside the JVM, connecting the {@link MemoryTransport}s of the processes
+ * that run in it. It never loses nor reorders datagrams; wrap the transports in a
+ * {@link FaultyTransport} to emulate a lossy network.
+ */
+final class MemoryNetwork {
+
+    private static final MemoryNetwork INSTANCE = new MemoryNetwork();
+
+    private final ConcurrentHashMap<SocketAddress, BlockingQueue<Packet>> inboxes;
+
+    MemoryNetwork() {
+        this.inboxes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return the network shared by the processes of the JVM
+     */
+    static MemoryNetwork get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Create the queue of the datagrams sent to an address
+     *
+     * @param addr the address
+     * @return the datagrams sent to addr
+     * @throws SocketException if the address is already bound
+     */
+    BlockingQueue<Packet> bind(InetSocketAddress addr) throws SocketException {
+        BlockingQueue<Packet> inbox = new LinkedBlockingQueue<>();
+        if (inboxes.putIfAbsent(addr, inbox) != null) {
+            throw new SocketException("Address already in use: " + addr);
+        }
+        return inbox;
+    }
+
+    /**
+     * Stop receiving the datagrams sent to an address, which can then be bound again
+     *
+     * @param addr the address
+     */
+    void unbind(InetSocketAddress addr) {
+        inboxes.remove(addr);
+    }
+
+    /**
+     * Send a copy of a datagram. Datagrams sent to an address that is not bound are dropped.
+     *
+     * @param source the address of the sender
+     * @param datagram the content of the datagram, between its position and its limit
+     * @param target   the destination of the datagram
+     */
+    void send(InetSocketAddress source, ByteBuffer datagram, SocketAddress target) {
+        BlockingQueue<Packet> inbox = inboxes.get(target);
+        if (inbox == null) {
+            return;
+        }
+        byte[] copy = new byte[datagram.remaining()];
+        datagram.get(copy);
+        inbox.add(new Packet(source, copy));
+    }
+
+    /**
+     * A datagram in flight
+     */
+    static final class Packet {
+        /**
+         * Marks the end of the datagrams of a closed transport
+         */
+        static final Packet CLOSED = new Packet(null, new byte[0]);
+
+        final InetSocketAddress source;
+        final byte[] data;
+
+        Packet(InetSocketAddress source, byte[] data) {
+            this.source = source;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ch.epfl.da.perfectLink;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Transport between processes running in the same JVM, through the
+ * {@link MemoryNetwork} they share. Datagrams are copied from the sender to
+ * the queue of the receiver.
+ */
+public class MemoryTransport implements Transport {
+
+    private final MemoryNetwork network;
+    private final InetSocketAddress address;
+    private final BlockingQueue<MemoryNetwork.Packet> inbox;
+
+    /**
+     * @param addr the address of the process in the network shared by the JVM
+     * @throws SocketException if another transport of the JVM is bound to addr
+     */
+    public MemoryTransport(InetSocketAddress addr) throws SocketException {
+        this(addr, MemoryNetwork.get());
+    }
+
+    MemoryTransport(InetSocketAddress addr, MemoryNetwork network) throws SocketException {
+        this.network = network;
+        this.address = addr;
+        this.inbox = network.bind(addr);
+    }
+
+    @Override
+    public void send(ByteBuffer datagram, SocketAddress target) {
+        network.send(address, datagram, target);
+    }
+
+    /**
+     * Unbind the address and make the threads receiving throw a SocketException
+     */
+    @Override
+    public void close() {
+        network.unbind(address);
+        inbox.add(MemoryNetwork.Packet.CLOSED);
+    }
+
+    @Override
+    public InetSocketAddress receive(List<PerfectLinkMessage> plms) throws IOException {
+        MemoryNetwork.Packet packet = take();
+        PerfectLinkMessage.deserializeBatch(ByteBuffer.wrap(packet.data), plms);
+        return packet.source;
+    }
+
+    @Override
+    public InetSocketAddress receive(ByteBuffer buffer) throws IOException {
+        MemoryNetwork.Packet packet = take();
+        buffer.put(packet.data).flip();
+        return packet.source;
+    }
+
+    private MemoryNetwork.Packet take() throws IOException {
+        MemoryNetwork.Packet packet;
+        try {
+            packet = inbox.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (packet == MemoryNetwork.Packet.CLOSED) {
+            // for the other receiving threads
+            inbox.add(packet);
+            throw new SocketException("Transport closed");
+        }
+        return packet;
+    }
+}
@@ -0,0 +1,74 @@
+package ch.epfl.da.perfectLink;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Coalesces the frames sent to one destination so that they leave
+ * in a single datagram. The datagram is sent either when the next frame
+ * does not fit anymore or when {@link #flush()} is called, which the outbox
+ * requests when a frame is added to an empty datagram.
+ *
+ * The frames are encoded in a buffer allocated by the transport, e.g. a direct one
+ * for a {@link ChannelTransport}, which sends it as is.
+ */
+class Outbox {
+
+    private final Transport transport;
+    private final SocketAddress target;
+    private final ByteBuffer buffer;
+    private final Runnable flushNeeded;
+
+    /**
+     * @param transport   the transport used to send the datagrams
+     * @param target      the destination of the datagrams
+     * @param capacity    the maximum size of a datagram
+     * @param flushNeeded called when a frame is added to an empty datagram, which must then be flushed
+     */
+    Outbox(Transport transport, SocketAddress target, int capacity, Runnable flushNeeded) {
+        this.transport = transport;
+        this.target = target;
+        this.buffer = transport.allocate(capacity);
+        this.flushNeeded = flushNeeded;
+    }
+
+    /**
+     * Serialize a message at the end of the datagram being built, sending the current
+     * one first if the frame does not fit in it.
+     *
+     * @param plm the message to send
+     * @throws IOException if the datagram could not be sent
+     */
+    synchronized void add(PerfectLinkMessage plm) throws IOException {
+        int frameLength = PerfectLinkMessage.frameLength(plm);
+        if (frameLength > buffer.capacity()) {
+            throw new IllegalArgumentException("A frame of " + frameLength + " bytes does not fit in a datagram");
+        }
+        if (frameLength > buffer.remaining()) {
+            flush();
+        }
+        boolean first = buffer.position() == 0;
+        PerfectLinkMessage.serialize(plm, buffer);
+        if (first) {
+            flushNeeded.run();
+        }
+    }
+
+    /**
+     * Send the frames added since the last flush, if any.
+     *
+     * @throws IOException if the datagram could not be sent, its frames are then dropped
+     */
+    synchronized void flush() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        try {
+            transport.send(buffer, target);
+        } finally {
+            buffer.clear();
+        }
+    }
+}
@@ -2,81 +2,257 @@ package ch.epfl.da.perfectLink;
 
 import ch.epfl.da.Callback;
 import ch.epfl.da.Process;
+import ch.epfl.da.Threads;
 import ch.epfl.da.message.Message;
+import ch.epfl.da.metrics.Metrics;
+import ch.epfl.da.pipeline.BoundedQueue;
+import ch.epfl.da.pipeline.ShardedCallback;
 
 import java.io.IOException;
 import java.net.*;
-import java.util.Arrays;
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 import static ch.epfl.da.perfectLink.MessageType.ACK;
 import static ch.epfl.da.perfectLink.MessageType.MESSAGE;
 
 /**
- * Implements a perfect link on top of UDP. It uses a mechanism of acks. It 
- * create a thread to receive messages and one thread to retransmit messages.
+ * Implements a perfect link on top of a datagram {@link Transport}, UDP by default. It uses a mechanism of acks. It 
+ * create a thread to receive messages, one thread to retransmit messages and
+ * one thread to flush the datagrams being built. {@link #close()} stops them.
  *
+ * Messages and acks sent to the same destination are batched in a single datagram
+ * (see {@link Outbox}). The size of a batch can be set with the system property
+ * da.pl.batchSize (at most {@link #MAX_SIZE}) and the maximum time a frame waits
+ * before being sent with da.pl.flushInterval (in milliseconds). The flush thread
+ * sleeps until a frame is added to an empty datagram.
+ *
+ * Each destination has its own sequence numbers so that a receiver can acknowledge
+ * all the messages it got from a sender with a single cumulative ACK, completed with
+ * a bitmap for the messages received out of order (see
+ * {@link PerfectLinkMessage#cumulativeACK(int, long)}). One ACK is sent per datagram
+ * containing messages.
+ *
+ * At most a window of messages is in flight towards each destination (see
+ * {@link SendWindow}), the others wait in a backlog until acks open the window.
+ * {@link #awaitCapacity(int)} lets the sender slow down when the backlogs grow.
+ *
+ * Retransmissions are scheduled in a {@link TimerWheel}, which the retransmit
+ * thread advances when its next slot holding messages elapses, sleeping in
+ * between, so an idle link does not use the CPU. The timeout of each destination
+ * is derived from its measured round-trip time (see {@link RttEstimator}).
+ *
+ * By default the receive thread also decodes the datagrams and runs the callback.
+ * With da.pipeline.workers set to n > 0, receiving is split in stages connected by
+ * {@link BoundedQueue}s of da.pipeline.queueSize elements: the receive thread only
+ * copies the datagrams in pooled buffers, a decode thread decodes them, dedups the
+ * messages and handles the acks, and the callback runs on n workers, the messages
+ * of an origin always going to the same worker (see {@link ShardedCallback}).
+ *
+ * The threads are created by {@link Threads}, as virtual threads if da.threads=virtual.
+ *
+ * The link counts in the {@link Metrics} of its process the messages sent (pl.sent),
+ * retransmitted (pl.retransmitted), received (pl.received) and received again
+ * (pl.duplicates), the acks sent and received (pl.acksSent, pl.acksReceived), the
+ * round-trip times in ms (pl.rtt) and the messages not acked yet (pl.pending).
  */
 public class PerfectLink {
 
-    private static final int MAX_SIZE = 1024;
+    /**
+     * Largest UDP payload that fits in a 1500 bytes Ethernet MTU
+     */
+    public static final int MAX_SIZE = 1472;
     private static final long MIN_TIMEOUT = 300;
-    private final DatagramSocket socket;
+    private static final int WHEEL_SIZE = 4096;
+    private static final int BATCH_SIZE = Math.min(MAX_SIZE, Integer.getInteger("da.pl.batchSize", MAX_SIZE));
+    private static final long FLUSH_INTERVAL = Long.getLong("da.pl.flushInterval", 1);
+    private static final int WORKERS = Integer.getInteger("da.pipeline.workers", 0);
+    private static final int QUEUE_SIZE = Integer.getInteger("da.pipeline.queueSize", 1024);
+    private final Transport transport;
     private final Callback<Message> callback;
     private final Thread receive;
+    private final Thread decode;
+    private final ShardedCallback workers;
     private final Thread retransmit;
-    private final Map<Integer, Long> timeouts;
-    private final Map<Integer, Boolean> received;
-    private final Map<Integer, Tuple> pending;
-    private final Set<MessageID> delivered;
+    private final Thread flush;
+    private final Outbox[] outboxes;
+    private final Map<Integer, RttEstimator> timeouts;
+    private final SendWindow[] pending;
+    private final TimerWheel timers;
+    private final SequenceSet[] delivered;
     private final Process process;
-    private int sequenceNumber;
+    private final LongAdder sent;
+    private final LongAdder retransmitted;
+    private final LongAdder received;
+    private final LongAdder duplicates;
+    private final LongAdder acksSent;
+    private final LongAdder acksReceived;
+    private volatile boolean closed;
 
     public PerfectLink(InetSocketAddress addr, Callback<Message> callBack, Process process) throws SocketException {
-        socket = new DatagramSocket(addr);
-        this.callback = callBack;
-        sequenceNumber = 0;
-        pending = new ConcurrentHashMap<>();
-        delivered = new HashSet<>();
-        receive = receiveThread();
+        this(Transport.open(addr), callBack, process);
+    }
+
+    /**
+     * @param transport the transport bound to the address of process
+     * @param callBack  the callback run when a message is delivered
+     * @param process   the process running the perfect link
+     */
+    public PerfectLink(Transport transport, Callback<Message> callBack, Process process) {
+        this.transport = transport;
+        if (WORKERS > 0) {
+            workers = new ShardedCallback(callBack, WORKERS, QUEUE_SIZE, Threads.factory());
+            this.callback = workers;
+        } else {
+            workers = null;
+            this.callback = callBack;
+        }
+        Metrics metrics = Metrics.of(process.getPID());
+        sent = metrics.counter("pl.sent");
+        retransmitted = metrics.counter("pl.retransmitted");
+        received = metrics.counter("pl.received");
+        duplicates = metrics.counter("pl.duplicates");
+        acksSent = metrics.counter("pl.acksSent");
+        acksReceived = metrics.counter("pl.acksReceived");
+
+        int nbrProcesses = process.getPeers().length;
+        pending = new SendWindow[nbrProcesses];
+        for (int i = 0; i < nbrProcesses; ++i) {
+            pending[i] = new SendWindow(i + 1, metrics.histogram("pl.rtt"));
+        }
+        metrics.gauge("pl.pending", () -> {
+            long size = 0;
+            for (SendWindow window : pending) {
+                size += window.size();
+            }
+            return size;
+        });
+        timers = new TimerWheel(WHEEL_SIZE, System.currentTimeMillis());
+        delivered = new SequenceSet[nbrProcesses];
+        for (int i = 0; i < nbrProcesses; ++i) {
+            delivered[i] = new SequenceSet();
+        }
+        if (WORKERS > 0) {
+            BoundedQueue<Datagram> received = new BoundedQueue<>(QUEUE_SIZE);
+            BoundedQueue<Datagram> free = new BoundedQueue<>(QUEUE_SIZE);
+            for (int i = 0; i < QUEUE_SIZE; ++i) {
+                free.offer(new Datagram());
+            }
+            receive = receiveStage(received, free);
+            decode = decodeStage(received, free);
+        } else {
+            receive = receiveThread();
+            decode = null;
+        }
         retransmit = retransmitThread();
+        flush = flushThread();
         this.process = process;
 
+        outboxes = new Outbox[process.getPeers().length];
+        for (int i = 0; i < outboxes.length; i++) {
+            outboxes[i] = new Outbox(transport, process.getPeers()[i], BATCH_SIZE, () -> LockSupport.unpark(flush));
+        }
+
         timeouts = new ConcurrentHashMap<>();
-        received = new ConcurrentHashMap<>();
 
         for (int i = 0; i < process.getPeers().length; i++) {
-            timeouts.put(i + 1, MIN_TIMEOUT);
-            received.put(i + 1, false);
+            timeouts.put(i + 1, new RttEstimator(MIN_TIMEOUT));
         }
 
     }
 
-    private int getAndIncrement() {
-        return sequenceNumber++;
-    }
-
     public void send(Message m, InetSocketAddress target) throws IOException {
-        int seq = getAndIncrement();
-        PerfectLinkMessage plm = new PerfectLinkMessage(MESSAGE, seq, m);
-        DatagramPacket packet = sendPerfectLinkMessage(target, plm);
         int pidTarget = process.pidFromAddr(target);
-        pending.put(seq, new Tuple(pidTarget, System.currentTimeMillis(), packet));
+        long now = System.currentTimeMillis();
+        SendWindow.Tuple tuple = pending[pidTarget - 1].enqueue(m, now);
+        sent.increment();
+        if (tuple != null) {
+            schedule(tuple, now + timeouts.get(pidTarget).rto());
+            outboxes[pidTarget - 1].add(tuple.plm);
+        }
+    }
+
+    /**
+     * Schedule the retransmission of a message, waking the retransmit thread up if
+     * it sleeps past the deadline
+     */
+    private void schedule(SendWindow.Tuple tuple, long deadline) {
+        if (timers.schedule(tuple, deadline)) {
+            LockSupport.unpark(retransmit);
+        }
+    }
+
+    /**
+     * Block until at least quorum of the other processes keep up with the messages
+     * sent to them, i.e. their backlog is shorter than their window.
+     *
+     * @param quorum the number of other processes that must have capacity
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void awaitCapacity(int quorum) throws InterruptedException {
+        synchronized (pending) {
+            while (withCapacity() < quorum) {
+                pending.wait(MIN_TIMEOUT);
+            }
+        }
     }
 
-    private DatagramPacket sendPerfectLinkMessage(SocketAddress target, PerfectLinkMessage plm) throws IOException {
-        byte[] sendBuf = PerfectLinkMessage.serialize(plm);
-        DatagramPacket packet = new DatagramPacket(sendBuf, sendBuf.length, target);
-        socket.send(packet);
-        return packet;
+    private int withCapacity() {
+        int count = 0;
+        for (SendWindow window : pending) {
+            if (window != pending[process.getPID() - 1] && window.hasCapacity()) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private void sendPerfectLinkMessage(int pidTarget, PerfectLinkMessage plm) throws IOException {
+        outboxes[pidTarget - 1].add(plm);
     }
 
     public void start() {
+        if (workers != null) {
+            workers.start();
+            decode.start();
+        }
         receive.start();
         retransmit.start();
+        flush.start();
+    }
+
+    /**
+     * Stop the threads of the perfect link and close its transport. The messages
+     * not acked yet are not retransmitted anymore.
+     *
+     * @throws IOException if the transport cannot be closed
+     */
+    public void close() throws IOException {
+        closed = true;
+        retransmit.interrupt();
+        flush.interrupt();
+        if (workers != null) {
+            workers.close();
+            decode.interrupt();
+        }
+        // unblocks the receive thread
+        transport.close();
+        receive.interrupt();
+        try {
+            for (Thread thread : new Thread[]{receive, decode, retransmit, flush}) {
+                if (thread != null && thread.getState() != Thread.State.NEW) {
+                    thread.join();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
@@ -84,107 +260,211 @@ public class PerfectLink {
      * @return a thread
      */
     private Thread receiveThread() {
-        return new Thread() {
-            public void run() {
-                while (true) {
-                    byte[] incomingData = new byte[MAX_SIZE];
-                    DatagramPacket packet = new DatagramPacket(incomingData, incomingData.length);
-                    try {
-                        socket.receive(packet);
-                        byte[] data = Arrays.copyOfRange(packet.getData(), 0, packet.getLength());
-                        PerfectLinkMessage plm = PerfectLinkMessage.deserialize(data);
+        return Threads.newThread(() -> {
+            List<PerfectLinkMessage> plms = new ArrayList<>();
+            while (!closed) {
+                plms.clear();
+                try {
+                    InetSocketAddress source = transport.receive(plms);
+                    handle(source, plms);
+                } catch (Exception e) {
+                    if (!closed) {
+                        e.printStackTrace();
+                    }
+                }
 
-                        InetSocketAddress source = new InetSocketAddress(packet.getAddress(), packet.getPort());
-                        int senderPid = process.pidFromAddr(source);
-                        received.put(senderPid, true);
+            }
+        });
+    }
 
-                        if (plm.getType() == MESSAGE) {
+    /**
+     * Deliver the new messages of a datagram, process its acks and ack its messages
+     * @param source the sender of the datagram
+     * @param plms the frames of the datagram
+     */
+    private void handle(InetSocketAddress source, List<PerfectLinkMessage> plms) throws IOException {
+        int senderPid = process.pidFromAddr(source);
+
+        boolean mustAck = false;
+        for (PerfectLinkMessage plm : plms) {
+            if (plm.getType() == MESSAGE) {
+                received.increment();
+
+                if (delivered[senderPid - 1].add(plm.getSeq())) {
+                    callback.onSuccess(plm.getMessage());
+                } else {
+                    duplicates.increment();
+                }
 
+                mustAck = true;
+            } else if (plm.getType() == ACK) {
+                acksReceived.increment();
+                acknowledge(senderPid, plm.getSeq(), plm.getSack());
+            }
+        }
 
-                            MessageID id = new MessageID(senderPid, plm.getSeq());
-                            if (delivered.add(id)) {
-                                callback.onSuccess(plm.getMessage());
-                            }
+        if (mustAck) {
+            acksSent.increment();
+            sendPerfectLinkMessage(senderPid, cumulativeACK(senderPid));
+        }
+    }
 
-                            sendPerfectLinkMessage(source, plm.getACKfromMessage());
-                        } else if (plm.getType() == ACK) {
-                            pending.remove(plm.getSeq());
-                        }
+    /**
+     * A received datagram waiting to be decoded
+     */
+    private static final class Datagram {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_SIZE);
+        InetSocketAddress source;
+    }
 
-                    } catch (Exception e) {
+    /**
+     * Create the thread that receives datagrams in buffers taken from free and passes
+     * them to the decode stage through received.
+     * @return a thread
+     */
+    private Thread receiveStage(BoundedQueue<Datagram> received, BoundedQueue<Datagram> free) {
+        return Threads.newThread(() -> {
+            while (!closed) {
+                try {
+                    Datagram datagram = free.take();
+                    datagram.buffer.clear();
+                    datagram.source = transport.receive(datagram.buffer);
+                    received.put(datagram);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    if (!closed) {
                         e.printStackTrace();
                     }
+                }
+            }
+        });
+    }
 
+    /**
+     * Create the thread that decodes the datagrams of received, gives their buffers
+     * back through free and handles their frames.
+     * @return a thread
+     */
+    private Thread decodeStage(BoundedQueue<Datagram> received, BoundedQueue<Datagram> free) {
+        return Threads.newThread(() -> {
+            List<PerfectLinkMessage> plms = new ArrayList<>();
+            while (!closed) {
+                try {
+                    Datagram datagram = received.take();
+                    plms.clear();
+                    PerfectLinkMessage.deserializeBatch(datagram.buffer, plms);
+                    InetSocketAddress source = datagram.source;
+                    free.put(datagram);
+                    handle(source, plms);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    e.printStackTrace();
                 }
             }
-        };
+        });
+    }
+
+    /**
+     * Build the ACK of all the messages received from a process
+     * @param senderPid the process whose messages we acknowledge
+     * @return a cumulative ACK
+     */
+    private PerfectLinkMessage cumulativeACK(int senderPid) {
+        SequenceSet fromSender = delivered[senderPid - 1];
+        return PerfectLinkMessage.cumulativeACK(fromSender.next(), fromSender.sack());
+    }
+
+    /**
+     * Remove from pending the messages acknowledged by a process
+     * @param pid the process which sent the ACK
+     * @param next every message sent to pid with a smaller sequence number has been received
+     * @param sack bit i is set if the message next + 1 + i has been received
+     */
+    private void acknowledge(int pid, int next, long sack) throws IOException {
+        long now = System.currentTimeMillis();
+        RttEstimator rtt = timeouts.get(pid);
+        for (SendWindow.Tuple tuple : pending[pid - 1].acknowledge(next, sack, now, rtt)) {
+            schedule(tuple, now + rtt.rto());
+            outboxes[pid - 1].add(tuple.plm);
+        }
+
+        synchronized (pending) {
+            pending.notifyAll();
+        }
     }
 
     /**
      * Create a thread that retransmit messages that have not been acked.
+     * The timeout of a process is backed off (and its window shrunk) when
+     * messages have to be retransmitted to it. Between two retransmissions it
+     * sleeps until the next slot of the wheel holding messages.
      * @return a thread
      */
     private Thread retransmitThread() {
-        return new Thread(() -> {
-            while (true) {
-            	
-                for (int i = 0; i < process.getPeers().length; i++) {
-                    if (received.get(i + 1)) {
-                        timeouts.put(i + 1, MIN_TIMEOUT);
-                    }
-
-                    received.put(i + 1, false);
-                }
+        return Threads.newThread(() -> {
+            List<SendWindow.Tuple> due = new ArrayList<>();
 
+            while (!closed) {
                 long now = System.currentTimeMillis();
-                boolean[] hasDoubled = new boolean[process.getPeers().length];
 
-                for (Tuple tuple : pending.values()) {
-                    long tstamp = tuple.timestamp;
-                    long tout = timeouts.get(tuple.PID);
-                   
-                   
-
-                    if (now > tstamp + tout) {
-                        hasDoubled[tuple.PID - 1] = true;
+                timers.expire(now, due);
+                for (SendWindow.Tuple tuple : due) {
+                    RttEstimator rtt = timeouts.get(tuple.PID);
+                    if (rtt.backoff(now)) {
+                        pending[tuple.PID - 1].shrink();
+                    }
 
-                        tuple.timestamp = now;
+                    tuple.retransmitted = true;
+                    retransmitted.increment();
+                    tuple.timestamp = now;
+                    // the wheel is looked at again below, no need to wake this thread up
+                    timers.schedule(tuple, now + rtt.rto());
 
-                        try {
-                            socket.send(tuple.packet);
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
+                    try {
+                        outboxes[tuple.PID - 1].add(tuple.plm);
+                    } catch (IOException e) {
+                        e.printStackTrace();
                     }
                 }
+                due.clear();
 
-                for (int i = 0; i < process.getPeers().length; i++) {
-                    if (hasDoubled[i]) {
-                        timeouts.computeIfPresent(i + 1, (key, value) -> 2 * value);
-                    }
+                long next = timers.next();
+                if (next == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else if (next > now) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(next - now));
                 }
+            }
+        });
+    }
 
+    /**
+     * Create a thread that sends the datagrams being built at most FLUSH_INTERVAL ms
+     * after their first frame was added. It sleeps while every datagram is empty.
+     * @return a thread
+     */
+    private Thread flushThread() {
+        return Threads.newThread(() -> {
+            while (!closed) {
+                // until an outbox gets its first frame
+                LockSupport.park(this);
                 try {
-                    Thread.sleep(MIN_TIMEOUT);
+                    Thread.sleep(FLUSH_INTERVAL);
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    return;
+                }
+
+                for (Outbox outbox : outboxes) {
+                    try {
+                        outbox.flush();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
                 }
             }
         });
     }
 
-    private class Tuple {
-        private int PID;
-        private long timestamp;
-        private DatagramPacket packet;
-
-        public Tuple(int PID, long timestamp, DatagramPacket packet) {
-            this.PID = PID;
-            this.timestamp = timestamp;
-            this.packet = packet;
-        }
-
-
-    }
-
 }
@@ -1,17 +1,39 @@
 package ch.epfl.da.perfectLink;
 
 import ch.epfl.da.message.Message;
+import ch.epfl.da.message.MessageKind;
 
 import java.nio.ByteBuffer;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * This class represents the packets sent across the perfect link.
  */
 public class PerfectLinkMessage {
+    private static final int TYPE_OFFSET = 0;
+    private static final int SEQ_OFFSET = 1;
+    private static final int ORIGIN_OFFSET = 5;
+    private static final int ORIGIN_SEQ_OFFSET = 9;
+    private static final int SENDER_OFFSET = 13;
+    private static final int LENGTH_OFFSET = 17;
+    private static final int DATA_OFFSET = 19;
+    private static final int SACK_OFFSET = 5;
+    private static final MessageKind[] KINDS = MessageKind.values();
+    /**
+     * Size of the selective acknowledgement bitmap of an ACK
+     */
+    static final int SACK_SIZE = 8;
+    /**
+     * Number of sequence numbers covered by the selective acknowledgement bitmap
+     */
+    public static final int SACK_RANGE = 8 * SACK_SIZE;
+
     private MessageType type;
     private int seq;
     private Message message;
+    private long sack;
     private int hash;
 
     public PerfectLinkMessage() {
@@ -29,120 +51,157 @@ public class PerfectLinkMessage {
     }
 
     /**
-     * serialize transforms this into an array of bytes
+     * Create a cumulative ACK: every message whose sequence number is smaller than next
+     * has been received. Bit i of sack is set if the message next + 1 + i has been received too.
+     *
+     * @param next the smallest sequence number that has not been received
+     * @param sack the selective acknowledgement bitmap of the messages after next
+     * @return the ACK
+     */
+    public static PerfectLinkMessage cumulativeACK(int next, long sack) {
+        PerfectLinkMessage plm = new PerfectLinkMessage(MessageType.ACK, next, null);
+        plm.sack = sack;
+        return plm;
+    }
+
+    /**
+     * serialize transforms this into an array of bytes (a frame)
      * The structure of the array is the following:
      * -----------PerfectLinkMessage--------------
-     * 0: type (1 for message and 0 for ACK)
+     * 0: type (0 for ACK, 1 + the ordinal of the {@link MessageKind} for a message)
      * 1-4: seq
      * --------Encapsulated message---------------
      * 5-8: origin
-     * 9-12: senderPID
-     * 13-...: data
+     * 9-12: sequence number given by the origin
+     * 13-16: senderPID
+     * 17-18: data length
+     * 19-...: data
+     * -------------------------------------------
+     * For an ACK, seq is the cumulative acknowledgement and
+     * the encapsulated message is replaced by:
+     * 5-12: selective acknowledgement bitmap
      * -------------------------------------------
+     * Several frames can be concatenated in the same datagram,
+     * see {@link #deserializeBatch(byte[], int)}.
      *
      * @param plm the PerfectLinkMessage we want to serialize
      * @return the serialized form of plm that can then be sent through the network
      */
     public static byte[] serialize(PerfectLinkMessage plm) {
-        byte[] bytes = new byte[1];
-        bytes[0] = (plm.type == MessageType.ACK) ? (byte) 0 : 1;
+        byte[] bytes = new byte[frameLength(plm)];
+        serialize(plm, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
 
-        ByteBuffer bb = ByteBuffer.allocate(4);
-        bb.putInt(plm.seq);
-        bytes = concatenate(bytes, bb.array());
+    /**
+     * serialize writes the frame of plm (see {@link #serialize(PerfectLinkMessage)}) in buffer,
+     * starting at its position, and moves the position after the frame. Each field is written
+     * once at its fixed offset, nothing is allocated.
+     *
+     * @param plm    the PerfectLinkMessage we want to serialize
+     * @param buffer the buffer to write to, with at least {@link #frameLength(PerfectLinkMessage)} bytes remaining
+     */
+    public static void serialize(PerfectLinkMessage plm, ByteBuffer buffer) {
+        int base = buffer.position();
+        buffer.put(base + TYPE_OFFSET, (plm.type == MessageType.ACK) ? (byte) 0 : (byte) (1 + plm.message.getKind().ordinal()));
+        buffer.putInt(base + SEQ_OFFSET, plm.seq);
 
         if (plm.type == MessageType.MESSAGE) {
-            bb.clear();
-            bb.putInt(plm.message.getOrigin());
-            bytes = concatenate(bytes, bb.array());
-
-            bb.clear();
-            bb.putInt(plm.message.getSenderPID());
-            bytes = concatenate(bytes, bb.array());
-
-            bytes = concatenate(bytes, plm.message.getData());
+            byte[] data = plm.message.getData();
+            buffer.putInt(base + ORIGIN_OFFSET, plm.message.getOrigin());
+            buffer.putInt(base + ORIGIN_SEQ_OFFSET, plm.message.getSeq());
+            buffer.putInt(base + SENDER_OFFSET, plm.message.getSenderPID());
+            buffer.putShort(base + LENGTH_OFFSET, (short) data.length);
+            buffer.position(base + DATA_OFFSET);
+            buffer.put(data);
+        } else {
+            buffer.putLong(base + SACK_OFFSET, plm.sack);
+            buffer.position(base + SACK_OFFSET + SACK_SIZE);
         }
-
-        return bytes;
     }
 
     /**
      * deserialize transforms the byte array passed as parameter into PerfectLinkMessage
-     * The structure of the array is the following:
-     * -----------PerfectLinkMessage--------------
-     * 0: type (1 for message and 0 for ACK)
-     * 1-4: seq
-     * --------Encapsulated message---------------
-     * 5-8: origin
-     * 9-12: senderPID
-     * 13-...: data
-     * -------------------------------------------
+     * The structure of the array is the one described in {@link #serialize(PerfectLinkMessage)}.
      *
      * @param serialized the serialized PerfectLinkMessage
      * @return the PerfectLinkMessage corresponding to the byte array
      */
     public static PerfectLinkMessage deserialize(byte[] serialized) {
-        PerfectLinkMessage plm = new PerfectLinkMessage();
+        return deserialize(ByteBuffer.wrap(serialized));
+    }
 
-        if (serialized[0] == 0) {
-            plm.type = MessageType.ACK;
-        } else {
-            plm.type = MessageType.MESSAGE;
+    /**
+     * deserializeBatch transforms a datagram containing several concatenated frames
+     * into the list of the PerfectLinkMessages it contains, in the order they were written.
+     *
+     * @param datagram the content of the datagram
+     * @param length   the number of valid bytes in datagram
+     * @return the PerfectLinkMessages contained in the datagram
+     */
+    public static List<PerfectLinkMessage> deserializeBatch(byte[] datagram, int length) {
+        List<PerfectLinkMessage> plms = new ArrayList<>();
+        deserializeBatch(ByteBuffer.wrap(datagram, 0, length), plms);
+        return plms;
+    }
+
+    /**
+     * deserializeBatch decodes the frames between the position and the limit of datagram,
+     * reading them directly from the buffer. The position of datagram is moved to its limit.
+     *
+     * @param datagram the buffer containing the datagram
+     * @param plms     the list to which the PerfectLinkMessages are added, in the order they were written
+     */
+    public static void deserializeBatch(ByteBuffer datagram, List<PerfectLinkMessage> plms) {
+        while (datagram.hasRemaining()) {
+            plms.add(deserialize(datagram));
         }
+    }
 
-        byte[] temp = Arrays.copyOfRange(serialized, 1, 5);
-        plm.seq = ByteBuffer.wrap(temp).getInt();
+    /**
+     * Deserialize the frame starting at the position of buffer and move the position after it.
+     * The fields are read at their fixed offsets; only the data of a message is copied.
+     *
+     * @param buffer the buffer containing the frame
+     * @return the PerfectLinkMessage corresponding to the frame
+     */
+    private static PerfectLinkMessage deserialize(ByteBuffer buffer) {
+        PerfectLinkMessage plm = new PerfectLinkMessage();
+        int base = buffer.position();
+
+        byte type = buffer.get(base + TYPE_OFFSET);
+        plm.type = (type == 0) ? MessageType.ACK : MessageType.MESSAGE;
+        plm.seq = buffer.getInt(base + SEQ_OFFSET);
         plm.hash = plm.seq;
 
         if (plm.type == MessageType.MESSAGE) {
-            
-
-            temp = Arrays.copyOfRange(serialized, 5, 9);
-            int origin = ByteBuffer.wrap(temp).getInt();
-
-            temp = Arrays.copyOfRange(serialized, 9, 13);
-            int sender = ByteBuffer.wrap(temp).getInt();
-
-            byte[] data =Arrays.copyOfRange(serialized, 13, serialized.length);
-            
-            Message m = new Message(origin, sender, data);
-
+            int origin = buffer.getInt(base + ORIGIN_OFFSET);
+            int originSeq = buffer.getInt(base + ORIGIN_SEQ_OFFSET);
+            int sender = buffer.getInt(base + SENDER_OFFSET);
+            byte[] data = new byte[buffer.getShort(base + LENGTH_OFFSET) & 0xFFFF];
+            buffer.position(base + DATA_OFFSET);
+            buffer.get(data);
+
+            Message m = new Message(KINDS[type - 1], origin, originSeq, sender, data);
             plm.message = m;
-
             plm.hash += m.hashCode();
+        } else {
+            plm.sack = buffer.getLong(base + SACK_OFFSET);
+            buffer.position(base + SACK_OFFSET + SACK_SIZE);
         }
 
         return plm;
     }
 
     /**
-     * Concatenates 2 byte arrays. Both inputs cannot be null.
-     *
-     * @param arr1
-     * @param arr2
-     * @return
+     * @param plm a PerfectLinkMessage
+     * @return the number of bytes taken by the serialized form of plm
      */
-    private static byte[] concatenate(byte[] arr1, byte[] arr2) {
-        if (arr1 == null && arr2 == null) {
-            throw new NullPointerException("Both inputs cannot be null");
-        } else if (arr1 == null) {
-            return arr2;
-        } else if (arr2 == null) {
-            return arr1;
-        }
-
-        byte[] result = new byte[arr1.length + arr2.length];
-
-        int i;
-        for (i = 0; i < arr1.length; i++) {
-            result[i] = arr1[i];
-        }
-
-        for (int j = 0; j < arr2.length; j++) {
-            result[i + j] = arr2[j];
+    public static int frameLength(PerfectLinkMessage plm) {
+        if (plm.type == MessageType.MESSAGE) {
+            return DATA_OFFSET + plm.message.getData().length;
         }
-
-        return result;
+        return SACK_OFFSET + SACK_SIZE;
     }
 
     public MessageType getType() {
@@ -157,12 +216,11 @@ public class PerfectLinkMessage {
         return seq;
     }
 
-    public PerfectLinkMessage getACKfromMessage() {
-        if (type == MessageType.MESSAGE) {
-            return new PerfectLinkMessage(MessageType.ACK, seq, null);
-        } else {
-            throw new IllegalStateException("Cannot transform an ACK");
-        }
+    /**
+     * @return the selective acknowledgement bitmap of an ACK
+     */
+    public long getSack() {
+        return sack;
     }
 
     @Override
@@ -171,7 +229,8 @@ public class PerfectLinkMessage {
             return true;
         if (o instanceof PerfectLinkMessage) {
             PerfectLinkMessage that = (PerfectLinkMessage) o;
-            return this.type == that.type && this.message.equals(that.message) && this.seq == that.seq;
+            return this.type == that.type && Objects.equals(this.message, that.message) && this.seq == that.seq
+                    && this.sack == that.sack;
         }
 
         return false;
@@ -1,19 +1,93 @@
 package ch.epfl.da.perfectLink;
 
 import ch.epfl.da.message.Message;
+import ch.epfl.da.message.MessageKind;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class PerfectLinkMessageTest {
     @Test
     public void testSerializeDeserialize(){
-        Message m = new Message(1,2, new byte[]{0,(byte)255});
+        Message m = new Message(1,7,2, new byte[]{0,(byte)255});
         PerfectLinkMessage plm = new PerfectLinkMessage(MessageType.MESSAGE, 3, m);
 
         byte[] serialized = PerfectLinkMessage.serialize(plm);
         PerfectLinkMessage newPlm = PerfectLinkMessage.deserialize(serialized);
 
         assertEquals(plm, newPlm);
+        assertEquals(7, newPlm.getMessage().getSeq());
+        assertEquals(2, newPlm.getMessage().getSenderPID());
+        assertArrayEquals(m.getData(), newPlm.getMessage().getData());
+    }
+
+    @Test
+    public void testDeserializeBatch(){
+        Message m1 = new Message(1,8,2, new byte[]{0,(byte)255});
+        Message m2 = new Message(3,9,4, new byte[]{1,2,3});
+        PerfectLinkMessage plm1 = new PerfectLinkMessage(MessageType.MESSAGE, 5, m1);
+        PerfectLinkMessage plm2 = new PerfectLinkMessage(MessageType.MESSAGE, 6, m2);
+
+        byte[] frame1 = PerfectLinkMessage.serialize(plm1);
+        byte[] ack = PerfectLinkMessage.serialize(PerfectLinkMessage.cumulativeACK(5, 0b101));
+        byte[] frame2 = PerfectLinkMessage.serialize(plm2);
+
+        byte[] datagram = new byte[frame1.length + ack.length + frame2.length + 10];
+        System.arraycopy(frame1, 0, datagram, 0, frame1.length);
+        System.arraycopy(ack, 0, datagram, frame1.length, ack.length);
+        System.arraycopy(frame2, 0, datagram, frame1.length + ack.length, frame2.length);
+
+        List<PerfectLinkMessage> plms = PerfectLinkMessage.deserializeBatch(datagram, datagram.length - 10);
+
+        assertEquals(3, plms.size());
+        assertEquals(plm1, plms.get(0));
+        assertEquals(8, plms.get(0).getMessage().getSeq());
+        assertEquals(2, plms.get(0).getMessage().getSenderPID());
+        assertArrayEquals(m1.getData(), plms.get(0).getMessage().getData());
+        assertEquals(MessageType.ACK, plms.get(1).getType());
+        assertEquals(5, plms.get(1).getSeq());
+        assertEquals(0b101, plms.get(1).getSack());
+        assertEquals(plm2, plms.get(2));
+        assertEquals(9, plms.get(2).getMessage().getSeq());
+        assertEquals(4, plms.get(2).getMessage().getSenderPID());
+        assertArrayEquals(m2.getData(), plms.get(2).getMessage().getData());
+    }
+
+    @Test
+    public void testDeserializeBatchFromBuffer(){
+        Message m = new Message(1,6,2, new byte[]{0,(byte)255});
+        PerfectLinkMessage plm = new PerfectLinkMessage(MessageType.MESSAGE, 3, m);
+        PerfectLinkMessage ack = PerfectLinkMessage.cumulativeACK(7, -1L);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        buffer.put(PerfectLinkMessage.serialize(plm)).put(PerfectLinkMessage.serialize(ack)).flip();
+
+        List<PerfectLinkMessage> plms = new ArrayList<>();
+        PerfectLinkMessage.deserializeBatch(buffer, plms);
+
+        assertEquals(2, plms.size());
+        assertEquals(plm, plms.get(0));
+        assertEquals(6, plms.get(0).getMessage().getSeq());
+        assertArrayEquals(m.getData(), plms.get(0).getMessage().getData());
+        assertEquals(ack, plms.get(1));
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void testSerializeControlMessage(){
+        Message m = new Message(1,7,2, new byte[]{1,2,3});
+        PerfectLinkMessage plm = new PerfectLinkMessage(MessageType.MESSAGE, 3, m.control(MessageKind.ACK, 4));
+
+        PerfectLinkMessage newPlm = PerfectLinkMessage.deserialize(PerfectLinkMessage.serialize(plm));
+
+        assertEquals(MessageKind.ACK, newPlm.getMessage().getKind());
+        assertEquals(m.id(), newPlm.getMessage().id());
+        assertEquals(4, newPlm.getMessage().getSenderPID());
+        assertEquals(0, newPlm.getMessage().getData().length);
     }
 }
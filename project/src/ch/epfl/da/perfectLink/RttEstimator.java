@@ -0,0 +1,76 @@
+package ch.epfl.da.perfectLink;
+
+/**
+ * Estimates the round-trip time to one process and derives the retransmission
+ * timeout from it, following Jacobson and Karels (as specified in RFC 6298):
+ * SRTT and RTTVAR are smoothed from the samples and RTO = SRTT + 4 * RTTVAR.
+ *
+ * Samples must only be taken from messages that were sent once (Karn's algorithm).
+ * When a retransmission is needed the timeout is doubled, at most once per
+ * timeout and up to da.pl.maxTimeout ms; the next sample restores it. The timeout
+ * never goes below da.pl.minTimeout ms.
+ */
+class RttEstimator {
+
+    static final long MIN_RTO = Long.getLong("da.pl.minTimeout", 5);
+    static final long MAX_RTO = Long.getLong("da.pl.maxTimeout", 60_000);
+    private static final long GRANULARITY = 1;
+
+    private double srtt;
+    private double rttvar;
+    private long rto;
+    private long lastBackoff;
+
+    /**
+     * @param initialRto the timeout to use until the first sample, in ms
+     */
+    RttEstimator(long initialRto) {
+        this.srtt = -1;
+        this.rttvar = 0;
+        this.rto = initialRto;
+        this.lastBackoff = Long.MIN_VALUE / 2;
+    }
+
+    /**
+     * Update the estimation with a new round-trip time measurement
+     *
+     * @param rtt the time in ms between the sending of a message and the reception of its ack
+     */
+    synchronized void sample(long rtt) {
+        if (srtt < 0) {
+            srtt = rtt;
+            rttvar = rtt / 2.0;
+        } else {
+            rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - rtt);
+            srtt = 0.875 * srtt + 0.125 * rtt;
+        }
+        rto = bound((long) Math.ceil(srtt + Math.max(GRANULARITY, 4 * rttvar)));
+    }
+
+    /**
+     * Double the timeout because a message had to be retransmitted, unless it
+     * was already doubled less than one timeout ago.
+     *
+     * @param now the current time in ms
+     * @return true if the timeout was doubled
+     */
+    synchronized boolean backoff(long now) {
+        if (now - lastBackoff < rto) {
+            return false;
+        }
+        lastBackoff = now;
+        rto = bound(2 * rto);
+        return true;
+    }
+
+    /**
+     * @return the current retransmission timeout in ms
+     */
+    synchronized long rto() {
+        return rto;
+    }
+
+    private static long bound(long rto) {
+        return Math.max(MIN_RTO, Math.min(MAX_RTO, rto));
+    }
+}
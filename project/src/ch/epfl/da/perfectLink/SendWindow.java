@@ -0,0 +1,166 @@
+package ch.epfl.da.perfectLink;
+
+import ch.epfl.da.message.Message;
+import ch.epfl.da.metrics.Histogram;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static ch.epfl.da.perfectLink.MessageType.MESSAGE;
+
+/**
+ * The state of the perfect link towards one destination: its sequence numbers,
+ * the messages in flight (sent but not acked) and the messages waiting for
+ * the window to open.
+ *
+ * The size of the window adapts to the rate at which the destination acks:
+ * it grows by one message per window of acked messages and is halved when
+ * messages must be retransmitted. It stays between da.pl.minWindow and
+ * da.pl.maxWindow messages.
+ */
+class SendWindow {
+
+    static final int MIN_WINDOW = Integer.getInteger("da.pl.minWindow", 8);
+    static final int MAX_WINDOW = Integer.getInteger("da.pl.maxWindow", 4096);
+    private static final int INITIAL_WINDOW = Math.max(MIN_WINDOW, Math.min(MAX_WINDOW, 64));
+
+    private final int pid;
+    private final ConcurrentSkipListMap<Integer, Tuple> inFlight;
+    private final Queue<Tuple> backlog;
+    private final Histogram rtts;
+    private int sequenceNumber;
+    private double window;
+
+    /**
+     * @param pid  the ID of the destination
+     * @param rtts the histogram of the round-trip times measured, in ms
+     */
+    SendWindow(int pid, Histogram rtts) {
+        this.pid = pid;
+        this.inFlight = new ConcurrentSkipListMap<>();
+        this.backlog = new ArrayDeque<>();
+        this.rtts = rtts;
+        this.sequenceNumber = 0;
+        this.window = INITIAL_WINDOW;
+    }
+
+    /**
+     * Give the next sequence number to a message and queue it.
+     *
+     * @param m   the message to send
+     * @param now the current time in ms
+     * @return the message if it enters the window and must be sent now, null if it waits in the backlog
+     */
+    synchronized Tuple enqueue(Message m, long now) {
+        int seq = sequenceNumber++;
+        Tuple tuple = new Tuple(pid, seq, new PerfectLinkMessage(MESSAGE, seq, m));
+        if (backlog.isEmpty() && inFlight.size() < window) {
+            tuple.timestamp = now;
+            inFlight.put(seq, tuple);
+            return tuple;
+        }
+        backlog.add(tuple);
+        return null;
+    }
+
+    /**
+     * Remove the messages acked by the destination from the window and let
+     * messages of the backlog enter it.
+     *
+     * @param next every message with a smaller sequence number has been received
+     * @param sack bit i is set if the message next + 1 + i has been received
+     * @param now  the current time in ms
+     * @param rtt  the estimator fed with the round-trip time of the most recently sent
+     *             message acked, if it was not retransmitted
+     * @return the messages that entered the window and must be sent now
+     */
+    synchronized List<Tuple> acknowledge(int next, long sack, long now, RttEstimator rtt) {
+        int acked = 0;
+        Tuple latest = null;
+        Iterator<Tuple> it = inFlight.headMap(next).values().iterator();
+        while (it.hasNext()) {
+            latest = ack(it.next(), latest);
+            it.remove();
+            ++acked;
+        }
+        while (sack != 0) {
+            int i = Long.numberOfTrailingZeros(sack);
+            Tuple tuple = inFlight.remove(next + 1 + i);
+            if (tuple != null) {
+                latest = ack(tuple, latest);
+                ++acked;
+            }
+            sack &= sack - 1;
+        }
+
+        if (latest != null && !latest.retransmitted) {
+            rtt.sample(now - latest.timestamp);
+            rtts.record(now - latest.timestamp);
+        }
+
+        window = Math.min(MAX_WINDOW, window + (double) acked / window);
+
+        List<Tuple> admitted = new ArrayList<>();
+        while (!backlog.isEmpty() && inFlight.size() < window) {
+            Tuple tuple = backlog.poll();
+            tuple.timestamp = now;
+            inFlight.put(tuple.seq, tuple);
+            admitted.add(tuple);
+        }
+        return admitted;
+    }
+
+    /**
+     * Mark a message as acked
+     *
+     * @param tuple  the acked message
+     * @param latest the most recently sent message acked so far, or null
+     * @return the most recently sent message among tuple and latest
+     */
+    private static Tuple ack(Tuple tuple, Tuple latest) {
+        tuple.acked = true;
+        return (latest == null || tuple.timestamp >= latest.timestamp) ? tuple : latest;
+    }
+
+    /**
+     * Halve the window because messages had to be retransmitted.
+     */
+    synchronized void shrink() {
+        window = Math.max(MIN_WINDOW, window / 2);
+    }
+
+    /**
+     * @return true if the backlog is shorter than the window, i.e. the destination
+     * keeps up with the messages sent to it
+     */
+    synchronized boolean hasCapacity() {
+        return backlog.size() < window;
+    }
+
+    /**
+     * @return the number of messages in flight or in the backlog
+     */
+    synchronized int size() {
+        return inFlight.size() + backlog.size();
+    }
+
+    static class Tuple {
+        final int PID;
+        final int seq;
+        final PerfectLinkMessage plm;
+        long timestamp;
+        long deadline;
+        volatile boolean retransmitted;
+        volatile boolean acked;
+
+        Tuple(int PID, int seq, PerfectLinkMessage plm) {
+            this.PID = PID;
+            this.seq = seq;
+            this.plm = plm;
+        }
+    }
+}
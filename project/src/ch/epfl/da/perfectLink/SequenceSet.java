@@ -0,0 +1,119 @@
+package ch.epfl.da.perfectLink;
+
+/**
+ * A set of non-negative sequence numbers that are mostly added in order.
+ * It stores the smallest sequence number that is not in the set (every smaller
+ * one is) and a bitmap of the sequence numbers above it, so its size only
+ * depends on how far out of order the sequence numbers arrive.
+ *
+ * This class is not thread-safe.
+ */
+public class SequenceSet {
+
+    private long[] bits;
+    private int next;
+
+    public SequenceSet() {
+        bits = new long[1];
+        next = 0;
+    }
+
+    /**
+     * Add a sequence number to the set
+     *
+     * @param seq the sequence number
+     * @return true if seq was not already in the set
+     */
+    public boolean add(int seq) {
+        if (seq < next) {
+            return false;
+        }
+
+        if (seq == next) {
+            ++next;
+            while (isSet(next)) {
+                clear(next);
+                ++next;
+            }
+            return true;
+        }
+
+        while (seq - next >= capacity()) {
+            grow();
+        }
+        if (isSet(seq)) {
+            return false;
+        }
+        bits[index(seq)] |= mask(seq);
+        return true;
+    }
+
+    /**
+     * @param seq a sequence number
+     * @return true if seq is in the set
+     */
+    public boolean contains(int seq) {
+        if (seq < next) {
+            return true;
+        }
+        return seq - next < capacity() && isSet(seq);
+    }
+
+    /**
+     * @return the smallest sequence number that is not in the set
+     */
+    public int next() {
+        return next;
+    }
+
+    /**
+     * @return a bitmap whose bit i is set if next() + 1 + i is in the set
+     */
+    public long sack() {
+        long sack = 0;
+        for (int i = 0; i < Long.SIZE; i++) {
+            if (contains(next + 1 + i)) {
+                sack |= 1L << i;
+            }
+        }
+        return sack;
+    }
+
+    /**
+     * @return the number of sequence numbers above next() that can be stored without growing
+     */
+    int capacity() {
+        return bits.length * Long.SIZE;
+    }
+
+    /**
+     * Double the size of the bitmap, keeping the sequence numbers it contains.
+     */
+    private void grow() {
+        long[] old = bits;
+        int oldCapacity = capacity();
+        bits = new long[old.length * 2];
+        for (int seq = next; seq - next < oldCapacity; seq++) {
+            int i = Math.floorMod(seq, oldCapacity);
+            if ((old[i / Long.SIZE] & (1L << i)) != 0) {
+                bits[index(seq)] |= mask(seq);
+            }
+        }
+    }
+
+    private boolean isSet(int seq) {
+        return (bits[index(seq)] & mask(seq)) != 0;
+    }
+
+    private void clear(int seq) {
+        bits[index(seq)] &= ~mask(seq);
+    }
+
+    private int index(int seq) {
+        return Math.floorMod(seq, capacity()) / Long.SIZE;
+    }
+
+    private long mask(int seq) {
+        return 1L << seq;
+    }
+}
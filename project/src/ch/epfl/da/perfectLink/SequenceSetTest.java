@@ -0,0 +1,82 @@
+package ch.epfl.da.perfectLink;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SequenceSetTest {
+    @Test
+    public void testAddOutOfOrder(){
+        SequenceSet set = new SequenceSet();
+
+        assertTrue(set.add(2));
+        assertTrue(set.add(70));
+        assertFalse(set.add(2));
+        assertEquals(0, set.next());
+        assertEquals(0b10, set.sack());
+
+        assertTrue(set.add(0));
+        assertTrue(set.add(1));
+        assertEquals(3, set.next());
+        assertFalse(set.add(1));
+        assertTrue(set.contains(70));
+        assertFalse(set.contains(69));
+        assertEquals(0, set.sack());
+    }
+
+    @Test
+    public void testSack(){
+        SequenceSet set = new SequenceSet();
+        set.add(0);
+        set.add(2);
+        set.add(3);
+        set.add(65);
+
+        assertEquals(1, set.next());
+        assertEquals(0b11 | 1L << 63, set.sack());
+    }
+
+    @Test
+    public void testFlatHeapAfterMillionsOfMessages(){
+        SequenceSet set = new SequenceSet();
+        Random random = new Random(42);
+        int reorder = 1000;
+        int total = 5_000_000;
+
+        Runtime runtime = Runtime.getRuntime();
+        long before = 0;
+        for (int base = 0; base < total; base += reorder) {
+            // deliver each block of sequence numbers in a random order
+            int[] block = new int[reorder];
+            for (int i = 0; i < reorder; i++) {
+                block[i] = base + i;
+            }
+            for (int i = reorder - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = block[i];
+                block[i] = block[j];
+                block[j] = tmp;
+            }
+            for (int seq : block) {
+                assertTrue(set.add(seq));
+                assertFalse(set.add(seq));
+            }
+
+            if (base == total / 10) {
+                System.gc();
+                before = runtime.totalMemory() - runtime.freeMemory();
+            }
+        }
+
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+
+        assertEquals(total, set.next());
+        assertTrue(set.capacity() <= 2 * 1024, "capacity grew to " + set.capacity());
+        assertTrue(after - before < 4 * 1024 * 1024, "heap grew by " + (after - before) + " bytes");
+    }
+}
@@ -0,0 +1,82 @@
+package ch.epfl.da.perfectLink;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Transport on top of a {@link DatagramSocket}. Each received datagram is copied
+ * into a new array before being decoded, except when it is received in a buffer:
+ * a heap buffer is received into directly, and a direct one through an array
+ * reused by the receiving thread. Likewise, a datagram in a direct buffer is sent
+ * through an array reused by the sending thread.
+ */
+public class SocketTransport implements Transport {
+
+    private final DatagramSocket socket;
+    private final int maxSize;
+    private final ThreadLocal<DatagramPacket> staging;
+
+    /**
+     * @param addr    the local address to bind
+     * @param maxSize the maximum size of a datagram
+     * @throws SocketException if the address cannot be bound
+     */
+    public SocketTransport(InetSocketAddress addr, int maxSize) throws SocketException {
+        this.socket = new DatagramSocket(addr);
+        this.maxSize = maxSize;
+        this.staging = ThreadLocal.withInitial(() -> new DatagramPacket(new byte[maxSize], maxSize));
+    }
+
+    @Override
+    public void send(ByteBuffer datagram, SocketAddress target) throws IOException {
+        DatagramPacket packet;
+        int length = datagram.remaining();
+        if (datagram.hasArray()) {
+            packet = new DatagramPacket(datagram.array(), datagram.arrayOffset() + datagram.position(), length, target);
+        } else {
+            packet = staging.get();
+            datagram.get(packet.getData(), 0, length);
+            packet.setLength(length);
+            packet.setSocketAddress(target);
+        }
+        datagram.position(datagram.limit());
+        socket.send(packet);
+    }
+
+    @Override
+    public InetSocketAddress receive(List<PerfectLinkMessage> plms) throws IOException {
+        byte[] incomingData = new byte[maxSize];
+        DatagramPacket packet = new DatagramPacket(incomingData, incomingData.length);
+        socket.receive(packet);
+        plms.addAll(PerfectLinkMessage.deserializeBatch(packet.getData(), packet.getLength()));
+        return new InetSocketAddress(packet.getAddress(), packet.getPort());
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+    }
+
+    @Override
+    public InetSocketAddress receive(ByteBuffer buffer) throws IOException {
+        DatagramPacket packet;
+        if (buffer.hasArray()) {
+            packet = new DatagramPacket(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            socket.receive(packet);
+            buffer.position(buffer.position() + packet.getLength());
+        } else {
+            packet = staging.get();
+            packet.setLength(maxSize);
+            socket.receive(packet);
+            buffer.put(packet.getData(), 0, packet.getLength());
+        }
+        buffer.flip();
+        return new InetSocketAddress(packet.getAddress(), packet.getPort());
+    }
+}
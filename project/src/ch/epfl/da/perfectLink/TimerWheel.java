@@ -0,0 +1,108 @@
+package ch.epfl.da.perfectLink;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hashed timer wheel with a resolution of one millisecond used to schedule
+ * retransmissions. A message whose deadline is t is stored in the slot t mod size,
+ * so advancing the wheel only looks at the messages of the slots that elapsed
+ * instead of every message in flight. Acked messages are dropped lazily when
+ * their slot is reached.
+ *
+ * The thread advancing the wheel sleeps until {@link #next()}, the first slot holding
+ * messages, and must be woken up when {@link #schedule(SendWindow.Tuple, long)} returns
+ * true because a message must be retransmitted before that.
+ */
+class TimerWheel {
+
+    private final List<List<SendWindow.Tuple>> slots;
+    private final int mask;
+    private long tick;
+    private int size;
+    private long wakeup;
+
+    /**
+     * @param size the number of slots, rounded up to a power of two
+     * @param now  the current time in ms
+     */
+    TimerWheel(int size, long now) {
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        slots = new ArrayList<>(capacity);
+        for (int i = 0; i < capacity; ++i) {
+            slots.add(i, new ArrayList<>());
+        }
+        mask = capacity - 1;
+        tick = now;
+        size = 0;
+        wakeup = Long.MAX_VALUE;
+    }
+
+    /**
+     * Schedule a message to be retransmitted at deadline, unless it is acked before.
+     *
+     * @param tuple    the message in flight
+     * @param deadline the time in ms at which it must be retransmitted
+     * @return true if its slot elapses before the thread advancing the wheel wakes up
+     */
+    synchronized boolean schedule(SendWindow.Tuple tuple, long deadline) {
+        tuple.deadline = deadline;
+        long at = Math.max(deadline, tick + 1);
+        slots.get((int) (at & mask)).add(tuple);
+        ++size;
+        if (at < wakeup) {
+            wakeup = at;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Advance the wheel up to now and collect the messages whose deadline has passed.
+     * They are removed from the wheel and must be scheduled again if needed.
+     *
+     * @param now the current time in ms
+     * @param due the list to which the messages that must be retransmitted are added
+     */
+    synchronized void expire(long now, List<SendWindow.Tuple> due) {
+        long from = Math.max(tick + 1, now - mask);
+        for (long t = from; t <= now; ++t) {
+            List<SendWindow.Tuple> slot = slots.get((int) (t & mask));
+            int kept = 0;
+            for (int i = 0; i < slot.size(); ++i) {
+                SendWindow.Tuple tuple = slot.get(i);
+                if (tuple.acked) {
+                    continue;
+                }
+                if (tuple.deadline <= now) {
+                    due.add(tuple);
+                } else {
+                    slot.set(kept++, tuple);
+                }
+            }
+            size -= slot.size() - kept;
+            slot.subList(kept, slot.size()).clear();
+        }
+        tick = Math.max(tick, now);
+    }
+
+    /**
+     * Find when the wheel must be advanced next. Messages whose deadline is more than
+     * a turn of the wheel away are looked at once per turn.
+     *
+     * @return the time in ms at which the first slot holding messages elapses,
+     * Long.MAX_VALUE if the wheel is empty
+     */
+    synchronized long next() {
+        wakeup = Long.MAX_VALUE;
+        if (size > 0) {
+            for (long t = tick + 1; t <= tick + slots.size(); ++t) {
+                if (!slots.get((int) (t & mask)).isEmpty()) {
+                    wakeup = t;
+                    break;
+                }
+            }
+        }
+        return wakeup;
+    }
+}
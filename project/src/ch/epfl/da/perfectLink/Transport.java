@@ -0,0 +1,94 @@
+package ch.epfl.da.perfectLink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * The datagram service used by the perfect link. The implementation is chosen at
+ * startup with the system property da.pl.transport: "socket" (default) for
+ * {@link SocketTransport}, "channel" for {@link ChannelTransport} or "memory" for
+ * {@link MemoryTransport} when all the processes run in the same JVM.
+ *
+ * If any of da.net.loss, da.net.delay, da.net.jitter or da.net.reorder is set,
+ * the transport is wrapped in a {@link FaultyTransport} that drops, delays and
+ * reorders the datagrams it sends.
+ *
+ * Closing a transport makes the threads blocked in receive throw an IOException.
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * Send a datagram
+     *
+     * @param datagram the content of the datagram, between its position and its limit,
+     *                 which the caller may reuse once send returns
+     * @param target   the destination of the datagram
+     * @throws IOException if the datagram could not be sent
+     */
+    void send(ByteBuffer datagram, SocketAddress target) throws IOException;
+
+    /**
+     * @param capacity the maximum size of a datagram
+     * @return a buffer in which to build the datagrams to send, of the kind the
+     * transport sends without copying
+     */
+    default ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Block until a datagram is received and decode the frames it contains.
+     *
+     * @param plms the list to which the decoded frames are added
+     * @return the source of the datagram
+     * @throws IOException if the datagram could not be received
+     */
+    InetSocketAddress receive(List<PerfectLinkMessage> plms) throws IOException;
+
+    /**
+     * Block until a datagram is received and copy it in buffer without decoding it.
+     *
+     * @param buffer the buffer to fill from its position, which is flipped so that it can be read
+     * @return the source of the datagram
+     * @throws IOException if the datagram could not be received
+     */
+    InetSocketAddress receive(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Create the transport selected by da.pl.transport and da.net.*
+     *
+     * @param addr the local address to bind
+     * @return the transport
+     * @throws SocketException if the address cannot be bound
+     */
+    static Transport open(InetSocketAddress addr) throws SocketException {
+        Transport transport = open(System.getProperty("da.pl.transport", "socket"), addr);
+        return FaultyTransport.isConfigured() ? FaultyTransport.fromProperties(transport, addr) : transport;
+    }
+
+    /**
+     * Create a transport without fault injection
+     *
+     * @param name the name of the transport: "socket", "channel" or "memory"
+     * @param addr the local address to bind
+     * @return the transport
+     * @throws SocketException if the address cannot be bound
+     */
+    static Transport open(String name, InetSocketAddress addr) throws SocketException {
+        switch (name) {
+            case "socket":
+                return new SocketTransport(addr, PerfectLink.MAX_SIZE);
+            case "channel":
+                return new ChannelTransport(addr, PerfectLink.MAX_SIZE);
+            case "memory":
+                return new MemoryTransport(addr);
+            default:
+                throw new IllegalArgumentException("Unknown transport " + name);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ch.epfl.da.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded lock-free queue between one producer thread and one consumer thread,
+ * backed by a circular array. {@link #put(Object)} waits while the queue is full,
+ * which slows the producer down to the pace of the consumer, and {@link #take()}
+ * spins briefly then parks until an element arrives.
+ *
+ * @param <T> the type of the elements
+ */
+public final class BoundedQueue<T> {
+
+    private static final int SPINS = 100;
+    private static final long FULL_BACKOFF = 10_000; // ns
+
+    private final AtomicReferenceArray<T> buffer;
+    private final int mask;
+    private final AtomicLong head; // next element to take, written by the consumer
+    private final AtomicLong tail; // next element to put, written by the producer
+    private volatile Thread waiting;
+
+    /**
+     * @param capacity the maximum number of elements, rounded up to a power of two
+     */
+    public BoundedQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+    }
+
+    /**
+     * Add an element if the queue is not full. Must only be called by the producer.
+     *
+     * @param e the element
+     * @return false if the queue is full
+     */
+    public boolean offer(T e) {
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            return false;
+        }
+        buffer.lazySet((int) (t & mask), e);
+        tail.set(t + 1); // a full fence, so that a consumer about to park is seen below
+        Thread consumer = waiting;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Add an element, waiting while the queue is full. Must only be called by the producer.
+     *
+     * @param e the element
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void put(T e) throws InterruptedException {
+        while (!offer(e)) {
+            LockSupport.parkNanos(FULL_BACKOFF);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * Remove the oldest element if there is one. Must only be called by the consumer.
+     *
+     * @return the oldest element, or null if the queue is empty
+     */
+    public T poll() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        int i = (int) (h & mask);
+        T e = buffer.get(i);
+        buffer.lazySet(i, null);
+        head.lazySet(h + 1);
+        return e;
+    }
+
+    /**
+     * Remove the oldest element, waiting for one if the queue is empty.
+     * Must only be called by the consumer.
+     *
+     * @return the oldest element
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public T take() throws InterruptedException {
+        T e;
+        int spins = 0;
+        while ((e = poll()) == null) {
+            if (spins++ < SPINS) {
+                Thread.yield();
+                continue;
+            }
+            waiting = Thread.currentThread();
+            if ((e = poll()) != null) {
+                waiting = null;
+                return e;
+            }
+            LockSupport.park(this);
+            waiting = null;
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return e;
+    }
+
+    /**
+     * @return the number of elements in the queue
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+}
@@ -0,0 +1,51 @@
+package ch.epfl.da.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BoundedQueueTest {
+    @Test
+    public void testBounded(){
+        BoundedQueue<Integer> queue = new BoundedQueue<>(3);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testProducerConsumer() throws InterruptedException {
+        BoundedQueue<Integer> queue = new BoundedQueue<>(16);
+        int total = 1_000_000;
+
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < total; i++) {
+                    queue.put(i);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        for (int i = 0; i < total; i++) {
+            assertEquals(i, queue.take());
+        }
+        producer.join();
+        assertNull(queue.poll());
+    }
+}
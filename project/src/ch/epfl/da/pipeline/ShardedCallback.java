@@ -0,0 +1,72 @@
+package ch.epfl.da.pipeline;
+
+import java.util.concurrent.ThreadFactory;
+
+import ch.epfl.da.Callback;
+import ch.epfl.da.message.Message;
+
+/**
+ * Runs a callback on a pool of worker threads, the messages of an origin always
+ * going to the same worker (origin mod the number of workers) through a
+ * {@link BoundedQueue}. The messages of one origin are thus handled one at a time,
+ * in the order they were given, while different origins are handled in parallel.
+ *
+ * {@link #onSuccess(Message)} must always be called from the same thread.
+ */
+public final class ShardedCallback implements Callback<Message> {
+
+    private final BoundedQueue<Message>[] shards;
+    private final Thread[] workers;
+
+    /**
+     * @param callback the callback to run
+     * @param nbrShards the number of worker threads
+     * @param capacity the capacity of the queue of each worker
+     * @param factory creates the worker threads
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ShardedCallback(Callback<Message> callback, int nbrShards, int capacity, ThreadFactory factory) {
+        shards = new BoundedQueue[nbrShards];
+        workers = new Thread[nbrShards];
+        for (int i = 0; i < nbrShards; ++i) {
+            BoundedQueue<Message> shard = new BoundedQueue<>(capacity);
+            shards[i] = shard;
+            workers[i] = factory.newThread(() -> {
+                try {
+                    while (true) {
+                        callback.onSuccess(shard.take());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+    }
+
+    /**
+     * Start the worker threads
+     */
+    public void start() {
+        for (Thread worker : workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * Stop the worker threads, dropping the messages still queued
+     */
+    public void close() {
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    @Override
+    public void onSuccess(Message message) {
+        try {
+            shards[Math.floorMod(message.getOrigin(), shards.length)].put(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
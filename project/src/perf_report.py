@@ -0,0 +1,91 @@
+#!/usr/bin/python3 -u
+#
+# Reports the throughput and the latency of a run from the logs of its processes.
+#
+# usage: python3 perf_report.py directory evaluation_time
+#
+# directory:       contains the membership file and the da_proc_N.out logs
+# evaluation_time: the number of seconds the processes ran, used for the
+#                  throughput when the logs have no timestamps
+#
+# The logs have timestamps (in microseconds) if the processes ran with
+# -Dda.log.timestamps=true. The throughput is then measured from the first
+# broadcast to the last delivery, and the latency of a message is the time
+# between its broadcast by its origin and its delivery by each process.
+
+import os
+import sys
+
+
+def percentile(values, p):
+    if not values:
+        return None
+    return values[min(len(values) - 1, int(len(values) * p / 100))]
+
+
+def read_log(path):
+    broadcasts = {}
+    deliveries = []
+    with open(path) as f:
+        for line in f:
+            tokens = line.split()
+            if not tokens:
+                continue
+            if tokens[0] == 'b':
+                broadcasts[int(tokens[1])] = int(tokens[2]) if len(tokens) > 2 else None
+            elif tokens[0] == 'd':
+                ts = int(tokens[3]) if len(tokens) > 3 else None
+                deliveries.append((int(tokens[1]), int(tokens[2]), ts))
+    return broadcasts, deliveries
+
+
+def main():
+    directory = sys.argv[1]
+    evaluation_time = float(sys.argv[2])
+
+    with open(os.path.join(directory, 'membership')) as f:
+        nbr_proc = int(f.readline())
+
+    logs = []
+    for i in range(nbr_proc):
+        logs.append(read_log(os.path.join(directory, 'da_proc_{}.out'.format(i + 1))))
+
+    timestamps = [ts for b, d in logs for ts in b.values() if ts is not None]
+    start = min(timestamps) if timestamps else None
+
+    all_latencies = []
+    total = 0
+    print('process  broadcast  delivered  msgs/sec  p50 (ms)  p99 (ms)')
+    for i, (broadcasts, deliveries) in enumerate(logs):
+        latencies = []
+        end = start
+        for origin, seq, ts in deliveries:
+            if ts is None or start is None:
+                continue
+            end = max(end, ts)
+            sent = logs[origin - 1][0].get(seq)
+            if sent is not None:
+                latencies.append((ts - sent) / 1000.0)
+        latencies.sort()
+        all_latencies.extend(latencies)
+        total += len(deliveries)
+
+        elapsed = (end - start) / 1e6 if start is not None and end > start else evaluation_time
+        p50 = percentile(latencies, 50)
+        p99 = percentile(latencies, 99)
+        print('{:7d}  {:9d}  {:9d}  {:8.0f}  {:>8}  {:>8}'.format(
+            i + 1, len(broadcasts), len(deliveries), len(deliveries) / elapsed,
+            '-' if p50 is None else '{:.2f}'.format(p50),
+            '-' if p99 is None else '{:.2f}'.format(p99)))
+
+    all_latencies.sort()
+    p50 = percentile(all_latencies, 50)
+    p99 = percentile(all_latencies, 99)
+    print('total delivered: {}, p50: {} ms, p99: {} ms'.format(
+        total,
+        '-' if p50 is None else '{:.2f}'.format(p50),
+        '-' if p99 is None else '{:.2f}'.format(p99)))
+
+
+if __name__ == '__main__':
+    main()
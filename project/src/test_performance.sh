@@ -1,59 +1,104 @@
 #!/bin/bash
 #
-# Tests the performance of the Uniform Reliable Broadcast application.
+# Tests the performance of the broadcast applications.
 #
-# usage: ./test_performance evaluation_time
+# usage: ./test_performance.sh evaluation_time [process_counts] [message_counts] [algorithms]
 #
 # evaluation_time: Specifies the number of seconds the application
 #                  should run.
+# process_counts:  Space separated numbers of processes to run (default "5").
+# message_counts:  Space separated numbers of messages each process
+#                  broadcasts (default "1000").
+# algorithms:      Space separated broadcasts to evaluate, among "fifo"
+#                  and "lcb" (default "fifo lcb").
+#
+# Every combination is run once. The processes log with timestamps, their
+# logs and the generated membership file are kept in
+# results/<algorithm>_<processes>_<messages>/ and
+# perf_report.py prints the delivered messages per second of each process
+# and the p50/p99 latency between the broadcast and the delivery of a message.
 #
 
 evaluation_time=$1
+process_counts=${2:-5}
+message_counts=${3:-1000}
+algorithms=${4:-fifo lcb}
 init_time=2
 
-echo "127.0.0.1 11001
-127.0.0.1 11002
-127.0.0.1 11003
-127.0.0.1 11004
-127.0.0.1 11005" >> membership
+if [ -z "$evaluation_time" ]; then
+    echo "usage: $0 evaluation_time [process_counts] [message_counts] [algorithms]"
+    exit 1
+fi
+
+# write in $2 the membership of n = $1 processes on the loopback interface,
+# process i being affected by process i - 1 for LCB
+write_membership() {
+    n=$1
+    file=$2
+    echo "$n" > $file
+    for i in `seq 1 $n`
+    do
+        echo "$i 127.0.0.1 $((11000 + i))" >> $file
+    done
+    echo "1" >> $file
+    for i in `seq 2 $n`
+    do
+        echo "$i $((i - 1))" >> $file
+    done
+}
 
-#start 5 processes
-for i in `seq 1 5`
+for algorithm in $algorithms
 do
-    ./da_proc $i membership &
-    da_proc_id[$i]=$!
-done
+for n in $process_counts
+do
+for m in $message_counts
+do
+    echo "Evaluating $algorithm with $n processes broadcasting $m messages for ${evaluation_time} seconds."
+    results=results/${algorithm}_${n}_${m}
+    mkdir -p $results
+    write_membership $n $results/membership
+    rm -f da_proc_*.out
 
-#leave some time for process initialization
-sleep $init_time
+    #start n processes
+    for i in `seq 1 $n`
+    do
+        java -Dda.log.timestamps=true -Dda.broadcast=$algorithm Da_proc $i $results/membership $m &
+        da_proc_id[$i]=$!
+    done
 
-#start broadcasting
-echo "Evaluating application for ${evaluation_time} seconds."
-for i in `seq 1 5`
-do
-    if [ -n "${da_proc_id[$i]}" ]; then
-	kill -USR1 "${da_proc_id[$i]}"
-    fi
-done
+    #leave some time for process initialization
+    sleep $init_time
 
-#let the processes do the work for some time
-sleep $evaluation_time
+    #start broadcasting
+    for i in `seq 1 $n`
+    do
+        if [ -n "${da_proc_id[$i]}" ]; then
+        kill -USR2 "${da_proc_id[$i]}"
+        fi
+    done
 
-#stop all processes
-for i in `seq 1 5`
-do
-    if [ -n "${da_proc_id[$i]}" ]; then
-	kill -TERM "${da_proc_id[$i]}"
-    fi
-done
+    #let the processes do the work for some time
+    sleep $evaluation_time
 
-#wait until all processes stop
-for i in `seq 1 5`
-do
-	wait "${da_proc_id[$i]}"
-done
+    #stop all processes
+    for i in `seq 1 $n`
+    do
+        if [ -n "${da_proc_id[$i]}" ]; then
+        kill -TERM "${da_proc_id[$i]}"
+        fi
+    done
+
+    #wait until all processes stop
+    for i in `seq 1 $n`
+    do
+        wait "${da_proc_id[$i]}"
+    done
 
-#count delivered messages in the logs
-#... (not implemented here)
+    #count delivered messages in the logs
+    mv da_proc_*.out $results/
+    python3 perf_report.py $results $evaluation_time | tee $results/report.txt
+done
+done
+done
 
 echo "Performance test done."